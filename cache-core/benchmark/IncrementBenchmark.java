@@ -0,0 +1,116 @@
+import com.lanlan.cache.core.CuckooHashCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures contended counter increments on a CuckooHashCache: the atomic merge() that
+ * backs /incr, a get() followed by put(), and a get() plus compareAndSet() retry loop.
+ * After each phase the counters are summed and compared with the increments made, so
+ * lost updates show up. Counters the cache evicted lose their whole count, so the
+ * evictions are reported as well.
+ *
+ * <p>Usage, after {@code mvn -pl cache-core compile}:
+ * {@code java -cp cache-core/target/classes cache-core/benchmark/IncrementBenchmark.java [threads] [seconds]}
+ */
+public class IncrementBenchmark {
+
+    private static final int[] COUNTERS = {1, 16, 1_000, 10_000};
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%d threads, %d CPUs, %d s per phase%n",
+                threads, Runtime.getRuntime().availableProcessors(), seconds);
+        System.out.printf("%-10s %10s %14s %14s %12s %10s%n",
+                "pattern", "counters", "increments/s", "lost updates", "CAS retries", "evicted");
+
+        // The first phase warms up the JIT and is not reported
+        run(Pattern.MERGE, 16, threads, Math.max(1, seconds / 2), false);
+        for (int counters : COUNTERS) {
+            for (Pattern pattern : Pattern.values()) {
+                run(pattern, counters, threads, seconds, true);
+            }
+        }
+    }
+
+    private enum Pattern {
+        MERGE {
+            @Override
+            long increment(CuckooHashCache<String, String> cache, String key) {
+                cache.merge(key, "1", (current, delta) -> Long.toString(Long.parseLong(current) + Long.parseLong(delta)));
+                return 0;
+            }
+        },
+        GET_PUT {
+            @Override
+            long increment(CuckooHashCache<String, String> cache, String key) {
+                long current = cache.get(key).map(Long::parseLong).orElse(0L);
+                cache.put(key, Long.toString(current + 1));
+                return 0;
+            }
+        },
+        GET_CAS {
+            @Override
+            long increment(CuckooHashCache<String, String> cache, String key) {
+                long retries = 0;
+                while (true) {
+                    Optional<String> current = cache.get(key);
+                    String next = Long.toString(current.map(Long::parseLong).orElse(0L) + 1);
+                    if (current.isPresent() ? cache.compareAndSet(key, current.get(), next)
+                            : cache.putIfAbsent(key, next).isEmpty()) {
+                        return retries;
+                    }
+                    retries++;
+                }
+            }
+        };
+
+        abstract long increment(CuckooHashCache<String, String> cache, String key);
+    }
+
+    private static void run(Pattern pattern, int counters, int threads, int seconds, boolean report)
+            throws InterruptedException {
+        CuckooHashCache<String, String> cache = new CuckooHashCache<>(counters * 4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder increments = new LongAdder();
+        LongAdder retries = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long retried = 0;
+                while (running.get()) {
+                    retried += pattern.increment(cache, "counter" + random.nextInt(counters));
+                    count++;
+                }
+                increments.add(count);
+                retries.add(retried);
+            }));
+        }
+
+        workers.forEach(Thread::start);
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (!report) {
+            return;
+        }
+        long stored = 0;
+        for (int i = 0; i < counters; i++) {
+            stored += cache.get("counter" + i).map(Long::parseLong).orElse(0L);
+        }
+        System.out.printf("%-10s %10d %14.0f %14d %12s %10d%n", pattern, counters,
+                increments.sum() / (double) seconds, increments.sum() - stored,
+                pattern == Pattern.GET_CAS ? Long.toString(retries.sum()) : "-", cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,160 @@
+import com.lanlan.cache.core.CuckooHashCache;
+import com.lanlan.cache.core.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures get/put throughput and latency of a CuckooHashCache while another thread
+ * walks the whole cache with scan() or removeIf(), against a baseline with no walk.
+ *
+ * <p>Usage, after {@code mvn -pl cache-core compile}:
+ * {@code java -cp cache-core/target/classes cache-core/benchmark/ScanThroughputBenchmark.java [threads] [seconds] [capacity]}
+ */
+public class ScanThroughputBenchmark {
+
+    private static final int PUT_PERCENT = 10;
+
+    // Every SAMPLE_EVERY-th operation is timed
+    private static final int SAMPLE_EVERY = 16;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 500_000;
+        int keys = capacity / 2;
+
+        CuckooHashCache<String, String> cache = new CuckooHashCache<>(capacity);
+        for (int i = 0; i < keys; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        System.out.printf("%d worker threads, %d CPUs, capacity %d, %d entries, %d%% puts, %d s per phase%n",
+                threads, Runtime.getRuntime().availableProcessors(), capacity, cache.getSize(), PUT_PERCENT, seconds);
+        System.out.printf("%-22s %12s %10s %10s %10s %14s%n",
+                "walker", "ops/s", "p50 us", "p99 us", "p99.9 us", "walk ms");
+
+        // The first phase warms up the JIT and is not reported
+        run(cache, keys, threads, Math.max(1, seconds / 2), Walker.NONE, false);
+        for (Walker walker : Walker.values()) {
+            run(cache, keys, threads, seconds, walker, true);
+        }
+    }
+
+    private enum Walker {
+        NONE,
+        SCAN_COUNT_100 {
+            @Override
+            void walk(CuckooHashCache<String, String> cache) {
+                scanAll(cache, 100);
+            }
+        },
+        SCAN_COUNT_10000 {
+            @Override
+            void walk(CuckooHashCache<String, String> cache) {
+                scanAll(cache, 10_000);
+            }
+        },
+        REMOVE_IF_NO_MATCH {
+            @Override
+            void walk(CuckooHashCache<String, String> cache) {
+                cache.removeIf(key -> key.startsWith("absent:"));
+            }
+        };
+
+        void walk(CuckooHashCache<String, String> cache) {
+        }
+
+        private static void scanAll(CuckooHashCache<String, String> cache, int count) {
+            int cursor = 0;
+            do {
+                ScanResult<String, String> page = cache.scan(cursor, count, key -> true);
+                cursor = page.getCursor();
+            } while (cursor != 0);
+        }
+    }
+
+    private static void run(CuckooHashCache<String, String> cache, int keys, int threads, int seconds,
+                            Walker walker, boolean report) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        List<long[]> samples = new ArrayList<>();
+        int[] sampleCounts = new int[threads];
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long[] latencies = new long[1 << 22];
+            samples.add(latencies);
+            int index = t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                int sampled = 0;
+                while (running.get()) {
+                    String key = "key" + random.nextInt(keys);
+                    boolean timed = count % SAMPLE_EVERY == 0 && sampled < latencies.length;
+                    long start = timed ? System.nanoTime() : 0;
+                    if (random.nextInt(100) < PUT_PERCENT) {
+                        cache.put(key, "value");
+                    } else {
+                        cache.get(key);
+                    }
+                    if (timed) {
+                        latencies[sampled++] = System.nanoTime() - start;
+                    }
+                    count++;
+                }
+                operations.add(count);
+                sampleCounts[index] = sampled;
+            });
+            workers.add(worker);
+        }
+
+        LongAdder walks = new LongAdder();
+        LongAdder walkNanos = new LongAdder();
+        Thread walkerThread = new Thread(() -> {
+            while (running.get() && walker != Walker.NONE) {
+                long start = System.nanoTime();
+                walker.walk(cache);
+                walkNanos.add(System.nanoTime() - start);
+                walks.increment();
+            }
+        });
+
+        workers.forEach(Thread::start);
+        walkerThread.start();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        walkerThread.join();
+
+        if (!report) {
+            return;
+        }
+        int total = Arrays.stream(sampleCounts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(samples.get(t), 0, all, offset, sampleCounts[t]);
+            offset += sampleCounts[t];
+        }
+        Arrays.sort(all);
+        String walk = walks.sum() == 0 ? "-" : String.format("%.1f x%d", walkNanos.sum() / 1e6 / walks.sum(), walks.sum());
+        System.out.printf("%-22s %12.0f %10.2f %10.2f %10.2f %14s%n", walker,
+                operations.sum() / (double) seconds,
+                percentile(all, 50), percentile(all, 99), percentile(all, 99.9), walk);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
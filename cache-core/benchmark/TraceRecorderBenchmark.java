@@ -0,0 +1,94 @@
+import com.lanlan.cache.core.CuckooHashCache;
+import com.lanlan.cache.trace.TraceOp;
+import com.lanlan.cache.trace.TraceRecorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures what recording a workload trace costs the request threads: get() throughput
+ * on a CuckooHashCache with and without a TraceRecorder.record() call per operation.
+ * The trace goes to a discarding stream, so only the recording path is measured.
+ *
+ * <p>Usage, after {@code mvn -pl cache-core compile}:
+ * {@code java -cp cache-core/target/classes cache-core/benchmark/TraceRecorderBenchmark.java [seconds] [threads...]}
+ */
+public class TraceRecorderBenchmark {
+
+    private static final int KEYS = 100_000;
+
+    // cache.trace.queue-capacity default
+    private static final int BUFFER_CAPACITY = 65536;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            threadCounts.add(Integer.parseInt(args[i]));
+        }
+        if (threadCounts.isEmpty()) {
+            threadCounts = List.of(1, 4, 16);
+        }
+
+        CuckooHashCache<String, String> cache = new CuckooHashCache<>(KEYS * 2);
+        for (int i = 0; i < KEYS; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        System.out.printf("%d CPUs, %d s per phase, %d keys%n", Runtime.getRuntime().availableProcessors(), seconds, KEYS);
+        System.out.printf("%-8s %14s %14s %10s %12s%n", "threads", "untraced/s", "traced/s", "overhead", "dropped");
+
+        // The first phases warm up the JIT and are not reported
+        run(cache, threadCounts.get(0), Math.max(1, seconds / 2), false);
+        run(cache, threadCounts.get(0), Math.max(1, seconds / 2), true);
+        for (int threads : threadCounts) {
+            double untraced = run(cache, threads, seconds, false)[0];
+            double[] traced = run(cache, threads, seconds, true);
+            System.out.printf("%-8d %14.0f %14.0f %9.1f%% %12.0f%n", threads, untraced, traced[0],
+                    100 * (1 - traced[0] / untraced), traced[1]);
+        }
+    }
+
+    /**
+     * @return operations per second, and the number of dropped records
+     */
+    private static double[] run(CuckooHashCache<String, String> cache, int threads, int seconds, boolean traced)
+            throws InterruptedException, IOException {
+        TraceRecorder recorder = traced ? new TraceRecorder(OutputStream.nullOutputStream(), BUFFER_CAPACITY) : null;
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (running.get()) {
+                    String key = "key" + random.nextInt(KEYS);
+                    int size = cache.get(key).map(String::length).orElse(0);
+                    if (recorder != null) {
+                        recorder.record(TraceOp.GET, key.hashCode(), size);
+                    }
+                    count++;
+                }
+                operations.add(count);
+            }));
+        }
+
+        workers.forEach(Thread::start);
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long dropped = 0;
+        if (recorder != null) {
+            recorder.close();
+            dropped = recorder.getDroppedCount();
+        }
+        return new double[]{operations.sum() / (double) seconds, dropped};
+    }
+}
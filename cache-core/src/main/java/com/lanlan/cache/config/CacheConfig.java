@@ -1,8 +1,24 @@
 package com.lanlan.cache.config;
 
+import com.lanlan.cache.core.EvictionPolicy;
+
 public class CacheConfig {
     private int capacity;
     private long expirationTimeInMillis;
+    // 0 means both tables may be filled completely
+    private int maxEntries;
+    private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+    // Keep a counting Bloom filter over the keys so misses can skip the tables
+    private boolean negativeLookupFilter;
+    private double filterFalsePositiveRate = 0.01;
+    // Number of independent shards the key space is split into; 1 keeps a single table pair
+    private int partitions = 1;
+    // Seed of the RANDOM eviction policy's generator, so replays are repeatable; 0 seeds it randomly
+    private long randomSeed;
+
+    public CacheConfig() {
+        this(1000, 0);
+    }
 
     public CacheConfig(int capacity, long expirationTimeInMillis) {
         this.capacity = capacity;
@@ -24,4 +40,52 @@ public class CacheConfig {
     public void setExpirationTimeInMillis(long expirationTimeInMillis) {
         this.expirationTimeInMillis = expirationTimeInMillis;
     }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    public boolean isNegativeLookupFilter() {
+        return negativeLookupFilter;
+    }
+
+    public void setNegativeLookupFilter(boolean negativeLookupFilter) {
+        this.negativeLookupFilter = negativeLookupFilter;
+    }
+
+    public double getFilterFalsePositiveRate() {
+        return filterFalsePositiveRate;
+    }
+
+    public void setFilterFalsePositiveRate(double filterFalsePositiveRate) {
+        this.filterFalsePositiveRate = filterFalsePositiveRate;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    public void setRandomSeed(long randomSeed) {
+        this.randomSeed = randomSeed;
+    }
 }
\ No newline at end of file
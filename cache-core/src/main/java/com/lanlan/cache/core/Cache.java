@@ -0,0 +1,62 @@
+package com.lanlan.cache.core;
+
+import com.lanlan.cache.config.CacheConfig;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Operations shared by the single-table {@link CuckooHashCache} and the
+ * sharded {@link PartitionedCache}.
+ * Values must not be null; writing a null value throws {@link NullPointerException}.
+ * Every write that changes a value (put, getAndSet, a successful compareAndSet, merge)
+ * restarts the entry's time to live; reads and failed writes leave it unchanged.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+public interface Cache<K, V> extends Iterable<Map.Entry<K, V>> {
+
+    /**
+     * Creates the cache described by a configuration: a {@link PartitionedCache}
+     * when more than one partition is configured, otherwise a {@link CuckooHashCache}.
+     *
+     * @param config the cache configuration
+     * @return a new, empty cache
+     */
+    static <K, V> Cache<K, V> create(CacheConfig config) {
+        return config.getPartitions() > 1 ? new PartitionedCache<>(config) : new CuckooHashCache<>(config);
+    }
+
+    Optional<V> get(K key);
+
+    boolean mightContain(K key);
+
+    void put(K key, V value);
+
+    Optional<V> getAndSet(K key, V value);
+
+    Optional<V> putIfAbsent(K key, V value);
+
+    boolean compareAndSet(K key, V expected, V newValue);
+
+    V merge(K key, V value, BinaryOperator<V> remappingFunction);
+
+    void remove(K key);
+
+    ScanResult<K, V> scan(int cursor, int count, Predicate<? super K> filter);
+
+    int removeIf(Predicate<? super K> filter);
+
+    void setCacheListener(CacheListener<K, V> listener);
+
+    int getMaxEntries();
+
+    void setMaxEntries(int maxEntries);
+
+    int getEvictionCount();
+
+    int getSize();
+}
@@ -14,12 +14,16 @@ public class CacheEntry<K, V> implements Serializable {
     // The key of this cache entry
     private final K key;
 
-    // The value associated with the key
-    private V value;
+    // The value associated with the key; volatile because atomic updates
+    // happen under the cache's read lock while other readers are active
+    private volatile V value;
 
     // Timestamp of the last access to this entry, used for LRU eviction
     private final AtomicLong lastAccessTime;
 
+    // System.nanoTime() deadline after which this entry is expired, 0 if it never expires
+    private volatile long expiresAt;
+
     /**
      * Constructs a new cache entry with the given key and value.
      *
@@ -51,6 +55,16 @@ public class CacheEntry<K, V> implements Serializable {
         return value;
     }
 
+    /**
+     * Returns the value of this entry without updating the last access time.
+     * Used by scans so that walking the cache does not disturb LRU order.
+     *
+     * @return the value
+     */
+    public V peekValue() {
+        return value;
+    }
+
     /**
      * Sets a new value for this entry and updates the last access time.
      *
@@ -70,6 +84,27 @@ public class CacheEntry<K, V> implements Serializable {
         return lastAccessTime.get();
     }
 
+    /**
+     * Sets this entry to expire after the given time to live, counted from now.
+     *
+     * @param expirationTimeInMillis time to live in milliseconds, 0 or less to never expire
+     */
+    public void expireAfter(long expirationTimeInMillis) {
+        this.expiresAt = expirationTimeInMillis > 0
+                ? System.nanoTime() + expirationTimeInMillis * 1_000_000L
+                : 0;
+    }
+
+    /**
+     * Returns whether this entry's time to live has elapsed.
+     *
+     * @return true if the entry is expired
+     */
+    public boolean isExpired() {
+        long deadline = expiresAt;
+        return deadline != 0 && System.nanoTime() - deadline >= 0;
+    }
+
     /**
      * Updates the last access time of this entry to the current time.
      * This method is thread-safe.
@@ -0,0 +1,30 @@
+package com.lanlan.cache.core;
+
+/**
+ * Receives every change to the contents of a cache, including evictions and
+ * expired entries being reclaimed. Callbacks run on the writing thread while the
+ * cache holds its lock, possibly concurrently for different keys, so
+ * implementations must be thread-safe and cheap.
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of mapped values
+ */
+public interface CacheListener<K, V> {
+
+    /**
+     * Called when a key is inserted or its value replaced.
+     *
+     * @param key the key
+     * @param oldValue the previous value, or null if the key was not present
+     * @param newValue the new value
+     */
+    void onPut(K key, V oldValue, V newValue);
+
+    /**
+     * Called when an entry leaves the cache for any reason.
+     *
+     * @param key the key
+     * @param value the value it held
+     */
+    void onRemove(K key, V value);
+}
@@ -0,0 +1,74 @@
+package com.lanlan.cache.core;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A counting Bloom filter answering "definitely absent" without touching the cache tables.
+ * Counters instead of bits allow keys to be removed again. Lookups are lock-free;
+ * a false positive only costs a regular table lookup, a false negative never happens
+ * as long as every add is matched by at most one remove.
+ *
+ * @param <K> the type of keys tracked by this filter
+ */
+public class CountingBloomFilter<K> {
+
+    private final AtomicIntegerArray counters;
+
+    // Number of counters touched per key
+    private final int hashFunctions;
+
+    /**
+     * Sizes the filter for the expected number of keys and false positive rate.
+     *
+     * @param expectedEntries the number of keys expected at the same time
+     * @param falsePositiveRate the acceptable false positive rate, between 0 and 1
+     */
+    public CountingBloomFilter(int expectedEntries, double falsePositiveRate) {
+        int entries = Math.max(expectedEntries, 1);
+        double ln2 = Math.log(2);
+        int size = (int) Math.ceil(-entries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.counters = new AtomicIntegerArray(Math.max(size, 64));
+        this.hashFunctions = Math.max(1, (int) Math.round((double) counters.length() / entries * ln2));
+    }
+
+    public void add(K key) {
+        int hash = key.hashCode();
+        for (int i = 0; i < hashFunctions; i++) {
+            counters.incrementAndGet(index(hash, i));
+        }
+    }
+
+    public void remove(K key) {
+        int hash = key.hashCode();
+        for (int i = 0; i < hashFunctions; i++) {
+            int index = index(hash, i);
+            // Never go below zero, so a stray remove cannot hide other keys
+            counters.getAndUpdate(index, count -> count > 0 ? count - 1 : 0);
+        }
+    }
+
+    /**
+     * Returns whether the key may be present.
+     *
+     * @param key the key to test
+     * @return false if the key is definitely absent
+     */
+    public boolean mightContain(K key) {
+        int hash = key.hashCode();
+        for (int i = 0; i < hashFunctions; i++) {
+            if (counters.get(index(hash, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the i-th counter index by double hashing two mixes of the key's hash code.
+     */
+    private int index(int hash, int i) {
+        int h1 = hash ^ (hash >>> 16);
+        int h2 = (hash * 0x9E3779B9) | 1;
+        return Math.floorMod(h1 + i * h2, counters.length());
+    }
+}
@@ -1,8 +1,22 @@
 package com.lanlan.cache.core;
 
+import com.lanlan.cache.config.CacheConfig;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -10,14 +24,20 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * A thread-safe implementation of a cache using Cuckoo hashing.
  * This cache uses two hash tables and two hash functions to achieve
  * constant-time average case performance for insertions and lookups.
+ * Iteration and scans are weakly consistent: the tables are walked segment by
+ * segment, each under a short lock, so entries moved or modified during the walk
+ * may be missed or seen twice.
  *
  * @param <K> the type of keys maintained by this cache
  * @param <V> the type of mapped values
  */
-public class CuckooHashCache<K, V> {
+public class CuckooHashCache<K, V> implements Cache<K, V> {
     // Maximum number of attempts to insert an item before forcing an eviction
     private static final int MAX_LOOP = 100;
 
+    // Number of slots visited per lock acquisition during scans
+    private static final int SCAN_SEGMENT_SIZE = 128;
+
     // The capacity of each of the two hash tables
     private final int capacity;
 
@@ -28,8 +48,8 @@ public class CuckooHashCache<K, V> {
     // Lock for ensuring thread-safety
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-    // Random number generator for choosing which table to evict from
-    private final Random random = new Random();
+    // Random number generator for the RANDOM eviction policy
+    private final Random random;
 
     // Counter for the number of evictions that have occurred
     private final AtomicInteger evictionCount = new AtomicInteger(0);
@@ -37,16 +57,47 @@ public class CuckooHashCache<K, V> {
     // Counter for the current number of items in the cache
     private final AtomicInteger size = new AtomicInteger(0);
 
+    // Time to live of new entries in milliseconds, 0 means entries never expire
+    private final long expirationTimeInMillis;
+
+    // Policy used to pick a victim when the cache reaches maxEntries
+    private final EvictionPolicy evictionPolicy;
+
+    // Entry quota; evictions start once size reaches it. Adjustable at runtime
+    private volatile int maxEntries;
+
+    // Optional filter over the stored keys, lets misses skip the lock; null when disabled
+    private final CountingBloomFilter<K> negativeLookupFilter;
+
+    // Observer of content changes, e.g. a digest tree for anti-entropy; null when unset
+    private volatile CacheListener<K, V> listener;
+
     /**
      * Constructs a new CuckooHashCache with the specified capacity.
      *
      * @param capacity the capacity of each of the two hash tables
      */
-    @SuppressWarnings("unchecked")
     public CuckooHashCache(int capacity) {
-        this.capacity = capacity;
+        this(new CacheConfig(capacity, 0));
+    }
+
+    /**
+     * Constructs a new CuckooHashCache from a configuration.
+     *
+     * @param config capacity, time to live, entry quota and eviction policy
+     */
+    @SuppressWarnings("unchecked")
+    public CuckooHashCache(CacheConfig config) {
+        this.capacity = config.getCapacity();
         this.table1 = new CacheEntry[capacity];
         this.table2 = new CacheEntry[capacity];
+        this.expirationTimeInMillis = config.getExpirationTimeInMillis();
+        this.evictionPolicy = config.getEvictionPolicy();
+        setMaxEntries(config.getMaxEntries());
+        this.random = config.getRandomSeed() != 0 ? new Random(config.getRandomSeed()) : new Random();
+        this.negativeLookupFilter = config.isNegativeLookupFilter()
+                ? new CountingBloomFilter<>(capacity * 2, config.getFilterFalsePositiveRate())
+                : null;
     }
 
     /**
@@ -76,132 +127,350 @@ public class CuckooHashCache<K, V> {
      * @return an Optional containing the value to which the specified key is mapped,
      *         or an empty Optional if this cache contains no mapping for the key
      */
+    @Override
     public Optional<V> get(K key) {
+        // Definitely absent keys are answered without taking the lock
+        if (!mightContain(key)) {
+            return Optional.empty();
+        }
         lock.readLock().lock();
         try {
-            // Check the first table
-            int h1 = hash1(key);
-            if (table1[h1] != null && table1[h1].getKey().equals(key)) {
-                table1[h1].updateAccessTime();
-                return Optional.of(table1[h1].getValue());
-            }
-            // Check the second table
-            int h2 = hash2(key);
-            if (table2[h2] != null && table2[h2].getKey().equals(key)) {
-                table2[h2].updateAccessTime();
-                return Optional.of(table2[h2].getValue());
+            CacheEntry<K, V> entry = findEntry(key);
+            if (entry == null) {
+                // Key not found or expired
+                return Optional.empty();
             }
-            // Key not found
-            return Optional.empty();
+            return Optional.of(entry.getValue());
         } finally {
             // release lock
             lock.readLock().unlock();
         }
     }
 
+    /**
+     * Returns whether the key may be in this cache, without locking.
+     * Always true when the negative lookup filter is disabled.
+     *
+     * @param key the key to test
+     * @return false if the key is definitely absent
+     */
+    @Override
+    public boolean mightContain(K key) {
+        return negativeLookupFilter == null || negativeLookupFilter.mightContain(key);
+    }
+
     /**
      * Associates the specified value with the specified key in this cache.
      *
      * @param key key with which the specified value is to be associated
      * @param value value to be associated with the specified key
      */
+    @Override
     public void put(K key, V value) {
+        Objects.requireNonNull(value, "value");
         // write lock
         lock.writeLock().lock();
         try {
-            // If the cache is full, perform an eviction
-            if (size.get() >= capacity * 2) {
-                evictAndInsert(key, value);
-                return;
-            }
+            insert(key, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-            // Try to insert the new entry
-            for (int i = 0; i < MAX_LOOP; i++) {
-                // Try to insert into the first table
-                int h1 = hash1(key);
-                // if table1[h1] is available, insert into h1
-                if (table1[h1] == null) {
-                    table1[h1] = new CacheEntry<>(key, value);
-                    // size++
-                    size.incrementAndGet();
-                    return;
-                }
-                // if table1[h1].key == keyInserted, update value
-                else if (table1[h1].getKey().equals(key)) {
-                    table1[h1].setValue(value);
-                    return;
-                }
-                // else: table1[h1] is used by other key
-                // try to find a space in table2
-
-                // Try to insert into the second table
-                int h2 = hash2(key);
-                if (table2[h2] == null) {
-                    table2[h2] = new CacheEntry<>(key, value);
-                    size.incrementAndGet();
-                    return;
-                } else if (table2[h2].getKey().equals(key)) {
-                    table2[h2].setValue(value);
-                    return;
-                }
+    /**
+     * Atomically replaces the value for a key, inserting it if absent.
+     *
+     * @param key key whose value is to be replaced
+     * @param value the new value
+     * @return an Optional containing the previous value, or an empty Optional if the key was absent
+     */
+    @Override
+    public Optional<V> getAndSet(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        return update(key, entry -> {
+            V previous = entry.getValue();
+            setValue(entry, value);
+            return Optional.of(previous);
+        }, () -> {
+            insert(key, value);
+            return Optional.empty();
+        });
+    }
 
-                // else:
-                // table1[h1], table2[h2] are occupied by other key
+    /**
+     * Inserts the value only if the key is not already present.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return an Optional containing the existing value, or an empty Optional if the value was inserted
+     */
+    @Override
+    public Optional<V> putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        return update(key, entry -> Optional.of(entry.getValue()), () -> {
+            insert(key, value);
+            return Optional.empty();
+        });
+    }
 
-                // Evict from table1 and try to reinsert
-                CacheEntry<K, V> temp = table1[h1];
-                table1[h1] = new CacheEntry<>(key, value);
-                key = temp.getKey();
-                value = temp.getValue();
+    /**
+     * Atomically sets the value for a key if its current value equals the expected one.
+     * Absent keys never match.
+     *
+     * @param key key whose value is to be replaced
+     * @param expected the expected current value
+     * @param newValue the new value
+     * @return true if the value was replaced
+     */
+    @Override
+    public boolean compareAndSet(K key, V expected, V newValue) {
+        Objects.requireNonNull(newValue, "newValue");
+        lock.readLock().lock();
+        try {
+            CacheEntry<K, V> entry = findEntry(key);
+            if (entry == null) {
+                return false;
+            }
+            synchronized (entry) {
+                if (!Objects.equals(entry.getValue(), expected)) {
+                    return false;
+                }
+                setValue(entry, newValue);
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-                // next for loop, put temp pair into other position until reaching MAX_LOOP
+    /**
+     * Atomically combines the current value with the given one, like {@link java.util.Map#merge}.
+     * If the key is absent the given value is inserted as is.
+     *
+     * @param key key with which the resulting value is to be associated
+     * @param value the value to insert or combine with the current value
+     * @param remappingFunction computes the new value from the current and the given value
+     * @return the new value associated with the key
+     */
+    @Override
+    public V merge(K key, V value, BinaryOperator<V> remappingFunction) {
+        Objects.requireNonNull(value, "value");
+        return update(key, entry -> {
+            V merged = Objects.requireNonNull(remappingFunction.apply(entry.getValue(), value), "merged value");
+            setValue(entry, merged);
+            return merged;
+        }, () -> {
+            insert(key, value);
+            return value;
+        });
+    }
+
+    /**
+     * Runs an atomic operation against a key.
+     * An existing entry is updated under the read lock plus the entry's own monitor,
+     * so updates to different keys do not serialize on the write lock. Only when the
+     * key is absent is the write lock taken, and the lookup is repeated under it.
+     *
+     * @param key the key to operate on
+     * @param onPresent applied to the existing entry while its monitor is held
+     * @param onAbsent invoked under the write lock when the key is absent
+     * @return the result of whichever function ran
+     */
+    private <R> R update(K key, Function<CacheEntry<K, V>, R> onPresent, Supplier<R> onAbsent) {
+        lock.readLock().lock();
+        try {
+            CacheEntry<K, V> entry = findEntry(key);
+            if (entry != null) {
+                synchronized (entry) {
+                    return onPresent.apply(entry);
+                }
             }
+        } finally {
+            lock.readLock().unlock();
+        }
 
-            // If we reach here, we couldn't insert after MAX_LOOP attempts
-            evictAndInsert(key, value);
+        lock.writeLock().lock();
+        try {
+            CacheEntry<K, V> entry = findEntry(key);
+            if (entry != null) {
+                synchronized (entry) {
+                    return onPresent.apply(entry);
+                }
+            }
+            return onAbsent.get();
         } finally {
             lock.writeLock().unlock();
         }
     }
 
     /**
-     * Evicts an entry from the cache and inserts a new one.
-     * This method implements a simple LRU (Least Recently Used) eviction policy.
+     * Looks up the live entry for a key in both tables. The caller must hold a lock.
      *
-     * @param key key of the new entry to insert
-     * @param value value of the new entry to insert
+     * @param key the key to look up
+     * @return the entry, or null if the key is absent or expired
      */
-    private void evictAndInsert(K key, V value) {
-        // Randomly choose which table to evict from
-        int tableChoice = random.nextInt(2);
-        CacheEntry<K, V>[] targetTable = (tableChoice == 0) ? table1 : table2;
+    private CacheEntry<K, V> findEntry(K key) {
+        int h1 = hash1(key);
+        if (table1[h1] != null && table1[h1].getKey().equals(key) && !table1[h1].isExpired()) {
+            return table1[h1];
+        }
+        int h2 = hash2(key);
+        if (table2[h2] != null && table2[h2].getKey().equals(key) && !table2[h2].isExpired()) {
+            return table2[h2];
+        }
+        return null;
+    }
 
-        // Find the least recently used entry
-        int lruIndex = 0;
-        long oldestAccess = Long.MAX_VALUE;
+    /**
+     * Inserts or updates an entry. The caller must hold the write lock.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     */
+    private void insert(K key, V value) {
+        // If the key is already present, update it in place
+        CacheEntry<K, V> existing = findEntry(key);
+        if (existing != null) {
+            setValue(existing, value);
+            return;
+        }
+
+        // Make room once the quota is reached. At most two evictions per insert,
+        // so a lowered quota is reached gradually rather than in one long pause
+        for (int i = 0; i < 2 && size.get() >= maxEntries; i++) {
+            evict();
+        }
 
-        // iterate all Entries, find the least recent used entry
-        //TODO: need to be updated with LinkedHashMap
-        for (int i = 0; i < capacity; i++) {
-            if (targetTable[i] == null) {
-                lruIndex = i;
-                break;
+        CacheEntry<K, V> pending = new CacheEntry<>(key, value);
+        pending.expireAfter(expirationTimeInMillis);
+        // Register the key before it becomes visible, so lock-free lookups never miss it
+        if (negativeLookupFilter != null) {
+            negativeLookupFilter.add(key);
+        }
+        CacheListener<K, V> currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onPut(key, null, value);
+        }
+
+        // Try to place the new entry
+        for (int i = 0; i < MAX_LOOP; i++) {
+            // Try the first table, then the second
+            int h1 = hash1(pending.getKey());
+            if (isFree(table1[h1])) {
+                fill(table1, h1, pending);
+                return;
             }
-            if (targetTable[i].getLastAccessTime() < oldestAccess) {
-                oldestAccess = targetTable[i].getLastAccessTime();
-                lruIndex = i;
+            int h2 = hash2(pending.getKey());
+            if (isFree(table2[h2])) {
+                fill(table2, h2, pending);
+                return;
             }
+
+            // Both slots are occupied: kick out one occupant and re-place it.
+            // Alternate tables so the same two entries do not keep swapping
+            CacheEntry<K, V>[] targetTable = (i % 2 == 0) ? table1 : table2;
+            int target = (i % 2 == 0) ? h1 : h2;
+            CacheEntry<K, V> displaced = targetTable[target];
+            targetTable[target] = pending;
+            pending = displaced;
         }
 
-        // Evict the chosen entry and insert the new one
-        if (targetTable[lruIndex] != null) {
-            evictionCount.incrementAndGet();
-        } else {
+        // If we reach here, we couldn't find a slot after MAX_LOOP attempts:
+        // the entry left over is evicted
+        evictionCount.incrementAndGet();
+        forget(pending);
+    }
+
+    /**
+     * Returns whether a slot can take a new entry.
+     */
+    private boolean isFree(CacheEntry<K, V> entry) {
+        return entry == null || entry.isExpired();
+    }
+
+    /**
+     * Stores an entry in a free slot, replacing an expired occupant if there is one.
+     */
+    private void fill(CacheEntry<K, V>[] table, int index, CacheEntry<K, V> entry) {
+        if (table[index] == null) {
             size.incrementAndGet();
+        } else {
+            forget(table[index]);
+        }
+        table[index] = entry;
+    }
+
+    /**
+     * Replaces the value of an entry that stays in the tables and restarts its time to
+     * live, as every write does. The caller must hold the write lock, or the read lock
+     * and the entry's monitor.
+     */
+    private void setValue(CacheEntry<K, V> entry, V value) {
+        CacheListener<K, V> currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onPut(entry.getKey(), entry.peekValue(), value);
+        }
+        entry.setValue(value);
+        entry.expireAfter(expirationTimeInMillis);
+    }
+
+    /**
+     * Unregisters an entry that has left the tables from the negative lookup filter
+     * and the listener.
+     */
+    private void forget(CacheEntry<K, V> entry) {
+        if (negativeLookupFilter != null) {
+            negativeLookupFilter.remove(entry.getKey());
+        }
+        CacheListener<K, V> currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onRemove(entry.getKey(), entry.peekValue());
         }
+    }
+
+    /**
+     * Evicts one entry according to the eviction policy. Expired entries are
+     * always evicted first under LRU.
+     */
+    private void evict() {
+        int end = capacity * 2;
+        int victim = -1;
 
-        // new entry replace the oldest entry
-        targetTable[lruIndex] = new CacheEntry<>(key, value);
+        if (evictionPolicy == EvictionPolicy.RANDOM) {
+            // Walk from a random position to the first occupied slot
+            int start = random.nextInt(end);
+            for (int i = 0; i < end && victim < 0; i++) {
+                int position = (start + i) % end;
+                if (slot(position) != null) {
+                    victim = position;
+                }
+            }
+        } else {
+            // iterate all Entries, find the least recent used entry
+            //TODO: need to be updated with LinkedHashMap
+            long oldestAccess = Long.MAX_VALUE;
+            for (int position = 0; position < end; position++) {
+                CacheEntry<K, V> entry = slot(position);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.isExpired()) {
+                    victim = position;
+                    break;
+                }
+                if (entry.getLastAccessTime() < oldestAccess) {
+                    oldestAccess = entry.getLastAccessTime();
+                    victim = position;
+                }
+            }
+        }
+
+        if (victim >= 0) {
+            forget(slot(victim));
+            clearSlot(victim);
+            size.decrementAndGet();
+            evictionCount.incrementAndGet();
+        }
     }
 
     /**
@@ -209,12 +478,14 @@ public class CuckooHashCache<K, V> {
      *
      * @param key key whose mapping is to be removed from the cache
      */
+    @Override
     public void remove(K key) {
         lock.writeLock().lock();
         try {
             // Check the first table
             int h1 = hash1(key);
             if (table1[h1] != null && table1[h1].getKey().equals(key)) {
+                forget(table1[h1]);
                 table1[h1] = null;
                 // size--
                 size.decrementAndGet();
@@ -224,6 +495,7 @@ public class CuckooHashCache<K, V> {
             // Check the second table
             int h2 = hash2(key);
             if (table2[h2] != null && table2[h2].getKey().equals(key)) {
+                forget(table2[h2]);
                 table2[h2] = null;
                 size.decrementAndGet();
             }
@@ -232,11 +504,165 @@ public class CuckooHashCache<K, V> {
         }
     }
 
+    /**
+     * Scans the cache starting at the given cursor.
+     * Whole segments are scanned, so a page may hold somewhat more than count entries.
+     *
+     * @param cursor the cursor returned by the previous call, or 0 to start a new scan
+     * @param count the minimum number of entries to collect before returning, unless the scan completes
+     * @param filter only entries whose key matches are returned
+     * @return the matching entries and the cursor to continue from
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    @Override
+    public ScanResult<K, V> scan(int cursor, int count, Predicate<? super K> filter) {
+        if (count < 1) {
+            // A page that returns nothing would hand back its own cursor, or 0 as if the scan were done
+            throw new IllegalArgumentException("Scan count must be at least 1: " + count);
+        }
+        int end = capacity * 2;
+        List<Map.Entry<K, V>> entries = new ArrayList<>();
+        int position = Math.max(cursor, 0);
+        while (position < end && entries.size() < count) {
+            int segmentEnd = Math.min(position + SCAN_SEGMENT_SIZE, end);
+            lock.readLock().lock();
+            try {
+                for (int i = position; i < segmentEnd; i++) {
+                    CacheEntry<K, V> entry = slot(i);
+                    if (entry != null && !entry.isExpired() && filter.test(entry.getKey())) {
+                        entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.peekValue()));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            position = segmentEnd;
+        }
+        return new ScanResult<>(position >= end ? 0 : position, entries);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the entries of this cache.
+     * The iterator never throws ConcurrentModificationException and does not
+     * support removal.
+     *
+     * @return an iterator over snapshots of the entries
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<>() {
+            private Iterator<Map.Entry<K, V>> page = Collections.emptyIterator();
+            private int cursor = 0;
+            private boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !done) {
+                    ScanResult<K, V> result = scan(cursor, SCAN_SEGMENT_SIZE, key -> true);
+                    page = result.getEntries().iterator();
+                    cursor = result.getCursor();
+                    done = cursor == 0;
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    /**
+     * Removes all entries whose key matches the filter.
+     * The write lock is taken once per segment rather than for the whole walk.
+     *
+     * @param filter selects the keys to remove
+     * @return the number of removed entries
+     */
+    @Override
+    public int removeIf(Predicate<? super K> filter) {
+        int end = capacity * 2;
+        int removed = 0;
+        for (int position = 0; position < end; position += SCAN_SEGMENT_SIZE) {
+            int segmentEnd = Math.min(position + SCAN_SEGMENT_SIZE, end);
+            lock.writeLock().lock();
+            try {
+                for (int i = position; i < segmentEnd; i++) {
+                    CacheEntry<K, V> entry = slot(i);
+                    if (entry != null && filter.test(entry.getKey())) {
+                        forget(entry);
+                        clearSlot(i);
+                        size.decrementAndGet();
+                        removed++;
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the entry at a scan position, where positions [0, capacity) map to
+     * table1 and [capacity, 2 * capacity) map to table2.
+     */
+    private CacheEntry<K, V> slot(int position) {
+        return position < capacity ? table1[position] : table2[position - capacity];
+    }
+
+    private void clearSlot(int position) {
+        if (position < capacity) {
+            table1[position] = null;
+        } else {
+            table2[position - capacity] = null;
+        }
+    }
+
+    /**
+     * Sets the listener notified of every content change. Entries stored before
+     * the listener is set are not reported, so set it while the cache is empty.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    @Override
+    public void setCacheListener(CacheListener<K, V> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the entry quota of this cache.
+     *
+     * @return the number of entries at which evictions start
+     */
+    @Override
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Changes the entry quota. Lowering it below the current size does not evict
+     * immediately; subsequent inserts shrink the cache towards the new quota.
+     *
+     * @param maxEntries the new quota; values outside [1, 2 * capacity] are clamped,
+     *                   and 0 means the full capacity of both tables
+     */
+    @Override
+    public void setMaxEntries(int maxEntries) {
+        int limit = capacity * 2;
+        this.maxEntries = maxEntries <= 0 ? limit : Math.min(maxEntries, limit);
+    }
+
     /**
      * Returns the number of evictions that have occurred.
      *
      * @return the number of evictions
      */
+    @Override
     public int getEvictionCount() {
         return evictionCount.get();
     }
@@ -246,6 +672,7 @@ public class CuckooHashCache<K, V> {
      *
      * @return the number of key-value mappings in this cache
      */
+    @Override
     public int getSize() {
         return size.get();
     }
@@ -0,0 +1,11 @@
+package com.lanlan.cache.core;
+
+/**
+ * Strategy used by {@link CuckooHashCache} to choose a victim once its entry quota is reached.
+ */
+public enum EvictionPolicy {
+    // Evict the least recently used entry
+    LRU,
+    // Evict an arbitrary entry; cheaper bookkeeping, useful for uniform access patterns
+    RANDOM
+}
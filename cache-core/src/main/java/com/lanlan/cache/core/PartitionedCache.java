@@ -0,0 +1,277 @@
+package com.lanlan.cache.core;
+
+import com.lanlan.cache.config.CacheConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A shared-nothing cache that splits the key space across independent
+ * {@link CuckooHashCache} shards. Every shard has its own tables, lock, eviction
+ * state and counters, so operations on keys in different shards never contend.
+ * Keys are routed by a mix of their hash code that is independent of the
+ * shards' own slot hashing.
+ *
+ * <p>With shard affinity enabled, {@link #submit} runs each operation on a single
+ * worker thread owned by the key's shard, which keeps a shard's tables in one core's caches.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+public class PartitionedCache<K, V> implements Cache<K, V> {
+
+    private final List<CuckooHashCache<K, V>> shards;
+
+    // Scan positions per shard, i.e. the slots of both of its tables
+    private final int span;
+
+    // One single-threaded worker per shard, or null without shard affinity
+    private final List<ExecutorService> workers;
+
+    /**
+     * Creates a partitioned cache without shard-affine workers.
+     *
+     * @param config capacity and quota for the whole cache, split evenly across config.getPartitions() shards
+     */
+    public PartitionedCache(CacheConfig config) {
+        this(config, false);
+    }
+
+    /**
+     * Creates a partitioned cache.
+     *
+     * @param config capacity and quota for the whole cache, split evenly across config.getPartitions() shards
+     * @param shardAffinity whether to start one worker thread per shard for {@link #submit}
+     */
+    public PartitionedCache(CacheConfig config, boolean shardAffinity) {
+        int partitions = Math.max(config.getPartitions(), 1);
+        CacheConfig shardConfig = shardConfig(config, partitions);
+        this.span = shardConfig.getCapacity() * 2;
+
+        List<CuckooHashCache<K, V>> created = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            created.add(new CuckooHashCache<>(shardConfig));
+        }
+        this.shards = Collections.unmodifiableList(created);
+
+        if (shardAffinity) {
+            List<ExecutorService> threads = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                String name = "cache-shard-" + i;
+                threads.add(Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+            }
+            this.workers = Collections.unmodifiableList(threads);
+        } else {
+            this.workers = null;
+        }
+    }
+
+    private static CacheConfig shardConfig(CacheConfig config, int partitions) {
+        CacheConfig shard = new CacheConfig(ceilDiv(config.getCapacity(), partitions), config.getExpirationTimeInMillis());
+        shard.setMaxEntries(config.getMaxEntries() > 0 ? ceilDiv(config.getMaxEntries(), partitions) : 0);
+        shard.setEvictionPolicy(config.getEvictionPolicy());
+        shard.setNegativeLookupFilter(config.isNegativeLookupFilter());
+        shard.setFilterFalsePositiveRate(config.getFilterFalsePositiveRate());
+        shard.setRandomSeed(config.getRandomSeed());
+        return shard;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * Returns the index of the shard owning a key.
+     * The hash code is run through the murmur3 finalizer first, because the shards
+     * index their tables by hashCode() modulo capacity and would otherwise only
+     * ever use a fraction of their slots.
+     */
+    private int indexFor(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shards.size());
+    }
+
+    private CuckooHashCache<K, V> shardFor(K key) {
+        return shards.get(indexFor(key));
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getPartitions() {
+        return shards.size();
+    }
+
+    /**
+     * Runs an operation against the shard owning a key. With shard affinity it runs
+     * on that shard's worker thread, otherwise on the calling thread.
+     *
+     * @param key the key that selects the shard
+     * @param operation the operation to run against the shard
+     * @return a future completed with the operation's result
+     */
+    public <R> CompletableFuture<R> submit(K key, Function<? super Cache<K, V>, ? extends R> operation) {
+        int index = indexFor(key);
+        Cache<K, V> shard = shards.get(index);
+        if (workers == null) {
+            return CompletableFuture.supplyAsync(() -> operation.apply(shard), Runnable::run);
+        }
+        return CompletableFuture.supplyAsync(() -> operation.apply(shard), workers.get(index));
+    }
+
+    /**
+     * Stops the shard worker threads, if any.
+     */
+    public void shutdown() {
+        if (workers != null) {
+            workers.forEach(ExecutorService::shutdown);
+        }
+    }
+
+    @Override
+    public Optional<V> get(K key) {
+        return shardFor(key).get(key);
+    }
+
+    @Override
+    public boolean mightContain(K key) {
+        return shardFor(key).mightContain(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        shardFor(key).put(key, value);
+    }
+
+    @Override
+    public Optional<V> getAndSet(K key, V value) {
+        return shardFor(key).getAndSet(key, value);
+    }
+
+    @Override
+    public Optional<V> putIfAbsent(K key, V value) {
+        return shardFor(key).putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean compareAndSet(K key, V expected, V newValue) {
+        return shardFor(key).compareAndSet(key, expected, newValue);
+    }
+
+    @Override
+    public V merge(K key, V value, BinaryOperator<V> remappingFunction) {
+        return shardFor(key).merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void remove(K key) {
+        shardFor(key).remove(key);
+    }
+
+    /**
+     * Scans the shards one after another. The cursor encodes the shard index
+     * and the position within that shard.
+     */
+    @Override
+    public ScanResult<K, V> scan(int cursor, int count, Predicate<? super K> filter) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Scan count must be at least 1: " + count);
+        }
+        List<Map.Entry<K, V>> entries = new ArrayList<>();
+        int shard = Math.max(cursor, 0) / span;
+        int position = Math.max(cursor, 0) % span;
+        while (shard < shards.size() && entries.size() < count) {
+            ScanResult<K, V> result = shards.get(shard).scan(position, count - entries.size(), filter);
+            entries.addAll(result.getEntries());
+            if (result.getCursor() != 0) {
+                return new ScanResult<>(shard * span + result.getCursor(), entries);
+            }
+            shard++;
+            position = 0;
+        }
+        return new ScanResult<>(shard < shards.size() ? shard * span : 0, entries);
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+            private Iterator<Map.Entry<K, V>> current = shards.get(0).iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && index < shards.size() - 1) {
+                    current = shards.get(++index).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    @Override
+    public int removeIf(Predicate<? super K> filter) {
+        return shards.stream().mapToInt(shard -> shard.removeIf(filter)).sum();
+    }
+
+    /**
+     * Sets the same listener on every shard.
+     */
+    @Override
+    public void setCacheListener(CacheListener<K, V> listener) {
+        shards.forEach(shard -> shard.setCacheListener(listener));
+    }
+
+    @Override
+    public int getMaxEntries() {
+        return shards.stream().mapToInt(CuckooHashCache::getMaxEntries).sum();
+    }
+
+    /**
+     * Splits the quota evenly across shards.
+     */
+    @Override
+    public void setMaxEntries(int maxEntries) {
+        int perShard = maxEntries > 0 ? ceilDiv(maxEntries, shards.size()) : 0;
+        shards.forEach(shard -> shard.setMaxEntries(perShard));
+    }
+
+    @Override
+    public int getEvictionCount() {
+        return shards.stream().mapToInt(CuckooHashCache::getEvictionCount).sum();
+    }
+
+    @Override
+    public int getSize() {
+        return shards.stream().mapToInt(CuckooHashCache::getSize).sum();
+    }
+}
@@ -0,0 +1,41 @@
+package com.lanlan.cache.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a cursor-based scan over a cache.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the value
+ */
+public class ScanResult<K, V> {
+    // Cursor to pass to the next scan call; 0 once the walk is complete
+    private final int cursor;
+
+    // Entries found in the scanned segments
+    private final List<Map.Entry<K, V>> entries;
+
+    public ScanResult(int cursor, List<Map.Entry<K, V>> entries) {
+        this.cursor = cursor;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the cursor to continue the scan from.
+     *
+     * @return the next cursor, or 0 if the scan is complete
+     */
+    public int getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Returns the entries of this page.
+     *
+     * @return the entries
+     */
+    public List<Map.Entry<K, V>> getEntries() {
+        return entries;
+    }
+}
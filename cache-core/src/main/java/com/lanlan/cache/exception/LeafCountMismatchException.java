@@ -0,0 +1,7 @@
+package com.lanlan.cache.exception;
+
+public class LeafCountMismatchException extends CacheException {
+    public LeafCountMismatchException(String message) {
+        super(message);
+    }
+}
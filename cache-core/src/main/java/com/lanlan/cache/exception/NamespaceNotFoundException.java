@@ -0,0 +1,7 @@
+package com.lanlan.cache.exception;
+
+public class NamespaceNotFoundException extends CacheException {
+    public NamespaceNotFoundException(String namespace) {
+        super("Cache namespace '" + namespace + "' is not configured");
+    }
+}
@@ -0,0 +1,123 @@
+package com.lanlan.cache.sync;
+
+import com.lanlan.cache.core.Cache;
+import com.lanlan.cache.core.ScanResult;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Repairs a local replica from a peer by transferring only the key ranges whose digests differ.
+ *
+ * <p>Both sides must use trees with the same leaf count; the peer checks it on the first
+ * digest request, so a mismatched pair aborts before anything is changed. A pass walks the
+ * trees from the root, fetching only the children of nodes that differ, then streams the
+ * peer's entries for the differing leaf buckets in batches. Local keys in those buckets
+ * that the peer does not have are removed, so afterwards the buckets match the peer's
+ * state as of the transfer. Only keys that were present when the pass started are
+ * removed, so a key first written during the pass survives it; a key that existed
+ * before and is rewritten during the pass is still removed if the peer lacks it.
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of mapped values
+ */
+public class AntiEntropySync<K, V> {
+
+    private final Cache<K, V> cache;
+
+    private final MerkleTree<K, V> tree;
+
+    private final int batchSize;
+
+    /**
+     * @param cache the local replica
+     * @param tree the tree maintained as the local replica's listener
+     * @param batchSize number of entries requested from the peer per batch
+     */
+    public AntiEntropySync(Cache<K, V> cache, MerkleTree<K, V> tree, int batchSize) {
+        this.cache = cache;
+        this.tree = tree;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Runs one repair pass against a peer.
+     *
+     * @param peer the replica to copy from
+     * @return what was exchanged
+     */
+    public SyncReport pullFrom(SyncPeer<K, V> peer) {
+        int leafCount = tree.getLeafCount();
+        int digestsFetched = 0;
+
+        // Descend level by level, keeping only the nodes whose hashes differ
+        int[] nodes = {1};
+        while (nodes.length > 0 && nodes[0] < leafCount) {
+            int[] differing = differing(nodes, peer.nodeHashes(leafCount, nodes));
+            digestsFetched += nodes.length;
+            nodes = IntStream.of(differing).flatMap(node -> IntStream.of(2 * node, 2 * node + 1)).toArray();
+        }
+        if (nodes.length > 0) {
+            long[] remote = peer.nodeHashes(leafCount, nodes);
+            digestsFetched += nodes.length;
+            nodes = differing(nodes, remote);
+        }
+        if (nodes.length == 0) {
+            return new SyncReport(digestsFetched, 0, 0, 0);
+        }
+
+        int[] buckets = IntStream.of(nodes).map(node -> node - leafCount).toArray();
+        BitSet repaired = new BitSet(leafCount);
+        for (int bucket : buckets) {
+            repaired.set(bucket);
+        }
+
+        // Keys that may be removed at the end, if the peer turns out not to have them
+        Set<K> stale = new HashSet<>();
+        int cursor = 0;
+        do {
+            ScanResult<K, V> page = cache.scan(cursor, batchSize, key -> repaired.get(tree.bucketOf(key)));
+            page.getEntries().forEach(entry -> stale.add(entry.getKey()));
+            cursor = page.getCursor();
+        } while (cursor != 0);
+
+        // Stream the peer's entries for those buckets and apply the ones that differ
+        int transferred = 0;
+        int updated = 0;
+        do {
+            ScanResult<K, V> batch = peer.entries(buckets, cursor, batchSize);
+            List<Map.Entry<K, V>> entries = batch.getEntries();
+            for (Map.Entry<K, V> entry : entries) {
+                stale.remove(entry.getKey());
+                Optional<V> local = cache.get(entry.getKey());
+                if (local.isEmpty() || !Objects.equals(local.get(), entry.getValue())) {
+                    cache.put(entry.getKey(), entry.getValue());
+                    updated++;
+                }
+            }
+            transferred += entries.size();
+            cursor = batch.getCursor();
+        } while (cursor != 0);
+
+        // Drop what the peer does not have in the repaired buckets
+        if (!stale.isEmpty()) {
+            updated += cache.removeIf(stale::contains);
+        }
+
+        return new SyncReport(digestsFetched, buckets.length, transferred, updated);
+    }
+
+    private int[] differing(int[] nodes, long[] remote) {
+        long[] local = tree.nodeHashes(nodes);
+        return IntStream.range(0, nodes.length)
+                .filter(i -> local[i] != remote[i])
+                .map(i -> nodes[i])
+                .toArray();
+    }
+}
@@ -0,0 +1,43 @@
+package com.lanlan.cache.sync;
+
+import com.lanlan.cache.core.Cache;
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+
+import java.util.BitSet;
+
+/**
+ * Serves a cache and its {@link MerkleTree} as a {@link SyncPeer}.
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of mapped values
+ */
+public class LocalSyncPeer<K, V> implements SyncPeer<K, V> {
+
+    private final Cache<K, V> cache;
+
+    private final MerkleTree<K, V> tree;
+
+    public LocalSyncPeer(Cache<K, V> cache, MerkleTree<K, V> tree) {
+        this.cache = cache;
+        this.tree = tree;
+    }
+
+    @Override
+    public long[] nodeHashes(int leafCount, int[] nodes) {
+        if (leafCount != tree.getLeafCount()) {
+            throw new LeafCountMismatchException(
+                    "Peer tree has " + tree.getLeafCount() + " leaves, the caller's has " + leafCount);
+        }
+        return tree.nodeHashes(nodes);
+    }
+
+    @Override
+    public ScanResult<K, V> entries(int[] buckets, int cursor, int batchSize) {
+        BitSet wanted = new BitSet(tree.getLeafCount());
+        for (int bucket : buckets) {
+            wanted.set(bucket);
+        }
+        return cache.scan(cursor, batchSize, key -> wanted.get(tree.bucketOf(key)));
+    }
+}
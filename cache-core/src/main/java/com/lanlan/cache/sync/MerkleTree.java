@@ -0,0 +1,138 @@
+package com.lanlan.cache.sync;
+
+import com.lanlan.cache.core.CacheListener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An incrementally maintained hash tree over the contents of a cache, used to find
+ * the key ranges in which two replicas differ.
+ *
+ * <p>Keys are hashed into a fixed number of leaf buckets. A leaf digest is the XOR of
+ * the hashes of its (key, value) pairs, so every put or remove updates one leaf in
+ * constant time without locking. Inner nodes are derived from the leaves on demand.
+ * Nodes are numbered heap-style: 1 is the root and node n has children 2n and 2n + 1,
+ * so leaf bucket b is node {@code leafCount + b}.
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of mapped values
+ */
+public class MerkleTree<K, V> implements CacheListener<K, V> {
+
+    private final AtomicLongArray leaves;
+
+    /**
+     * @param leafCount number of leaf buckets, rounded up to a power of two
+     */
+    public MerkleTree(int leafCount) {
+        int size = Integer.highestOneBit(Math.max(leafCount, 2) - 1) << 1;
+        this.leaves = new AtomicLongArray(size);
+    }
+
+    public int getLeafCount() {
+        return leaves.length();
+    }
+
+    /**
+     * Returns the leaf bucket a key belongs to.
+     *
+     * @param key the key
+     * @return the bucket index, between 0 and getLeafCount() - 1
+     */
+    public int bucketOf(K key) {
+        return (int) mix(key.hashCode()) & (leaves.length() - 1);
+    }
+
+    @Override
+    public void onPut(K key, V oldValue, V newValue) {
+        long delta = entryHash(key, newValue);
+        if (oldValue != null) {
+            delta ^= entryHash(key, oldValue);
+        }
+        toggle(key, delta);
+    }
+
+    @Override
+    public void onRemove(K key, V value) {
+        toggle(key, entryHash(key, value));
+    }
+
+    private void toggle(K key, long delta) {
+        leaves.accumulateAndGet(bucketOf(key), delta, (current, d) -> current ^ d);
+    }
+
+    /**
+     * Computes the current hashes of the given nodes.
+     *
+     * @param nodes heap-style node numbers
+     * @return the hash of each node, in the same order
+     * @throws IllegalArgumentException if a node is outside [1, 2 * getLeafCount())
+     */
+    public long[] nodeHashes(int[] nodes) {
+        for (int node : nodes) {
+            if (node < 1 || node >= 2 * leaves.length()) {
+                throw new IllegalArgumentException("Node " + node + " is not in a tree of " + leaves.length() + " leaves");
+            }
+        }
+        long[] tree = snapshot();
+        long[] hashes = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            hashes[i] = tree[nodes[i]];
+        }
+        return hashes;
+    }
+
+    /**
+     * Builds the full tree from the current leaves.
+     */
+    private long[] snapshot() {
+        int leafCount = leaves.length();
+        long[] tree = new long[leafCount * 2];
+        for (int i = 0; i < leafCount; i++) {
+            tree[leafCount + i] = leaves.get(i);
+        }
+        for (int node = leafCount - 1; node >= 1; node--) {
+            tree[node] = mix(Long.rotateLeft(tree[2 * node], 31) ^ tree[2 * node + 1]);
+        }
+        return tree;
+    }
+
+    private static long entryHash(Object key, Object value) {
+        return mix(contentHash(key) ^ mix(contentHash(value) + 0x9e3779b97f4a7c15L));
+    }
+
+    /**
+     * 64-bit FNV-1a over the content of strings and byte arrays, whose 32-bit hashCode()
+     * collides too easily ("Aa" and "BB") to tell replicas apart. Other types fall back to
+     * hashCode().
+     */
+    private static long contentHash(Object object) {
+        long hash = 0xcbf29ce484222325L;
+        if (object instanceof CharSequence) {
+            CharSequence chars = (CharSequence) object;
+            for (int i = 0; i < chars.length(); i++) {
+                hash = (hash ^ chars.charAt(i)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+        if (object instanceof byte[]) {
+            for (byte b : (byte[]) object) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+        return mix(object.hashCode());
+    }
+
+    /**
+     * 64-bit finalizer from MurmurHash3.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,34 @@
+package com.lanlan.cache.sync;
+
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+
+/**
+ * The remote side of an anti-entropy exchange: the replica whose contents are copied.
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of mapped values
+ */
+public interface SyncPeer<K, V> {
+
+    /**
+     * Returns the peer's hashes of the given tree nodes.
+     *
+     * @param leafCount the leaf count of the caller's tree, which the peer's must match
+     * @param nodes heap-style node numbers, see {@link MerkleTree}
+     * @return one hash per node, in the same order
+     * @throws LeafCountMismatchException if the peer's tree has a different leaf count
+     * @throws IllegalArgumentException if a node is outside the peer's tree
+     */
+    long[] nodeHashes(int leafCount, int[] nodes);
+
+    /**
+     * Streams the peer's entries in the given leaf buckets, one batch per call.
+     *
+     * @param buckets leaf bucket indexes
+     * @param cursor 0 for the first batch, then the cursor of the previous result
+     * @param batchSize the minimum number of entries per batch, unless the stream ends
+     * @return a batch of entries and the cursor for the next one, 0 once the stream is complete
+     */
+    ScanResult<K, V> entries(int[] buckets, int cursor, int batchSize);
+}
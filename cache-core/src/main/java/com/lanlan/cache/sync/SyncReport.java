@@ -0,0 +1,42 @@
+package com.lanlan.cache.sync;
+
+/**
+ * What one anti-entropy pass exchanged and changed.
+ */
+public class SyncReport {
+
+    // Node hashes fetched from the peer while descending the tree
+    private final int digestsFetched;
+
+    // Leaf buckets found to differ
+    private final int bucketsRepaired;
+
+    // Entries received from the peer
+    private final int entriesTransferred;
+
+    // Local entries written or removed
+    private final int entriesUpdated;
+
+    public SyncReport(int digestsFetched, int bucketsRepaired, int entriesTransferred, int entriesUpdated) {
+        this.digestsFetched = digestsFetched;
+        this.bucketsRepaired = bucketsRepaired;
+        this.entriesTransferred = entriesTransferred;
+        this.entriesUpdated = entriesUpdated;
+    }
+
+    public int getDigestsFetched() {
+        return digestsFetched;
+    }
+
+    public int getBucketsRepaired() {
+        return bucketsRepaired;
+    }
+
+    public int getEntriesTransferred() {
+        return entriesTransferred;
+    }
+
+    public int getEntriesUpdated() {
+        return entriesUpdated;
+    }
+}
@@ -0,0 +1,25 @@
+package com.lanlan.cache.trace;
+
+/**
+ * Operations captured in a workload trace.
+ */
+public enum TraceOp {
+    GET,
+    PUT,
+    REMOVE;
+
+    private static final TraceOp[] VALUES = values();
+
+    /**
+     * Returns the operation for its one-byte encoding.
+     *
+     * @param code the value written by {@link #ordinal()}
+     * @return the operation
+     */
+    public static TraceOp fromCode(int code) {
+        if (code < 0 || code >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown trace op code: " + code);
+        }
+        return VALUES[code];
+    }
+}
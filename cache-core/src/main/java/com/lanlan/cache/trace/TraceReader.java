@@ -0,0 +1,51 @@
+package com.lanlan.cache.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a trace written by {@link TraceRecorder}.
+ */
+public class TraceReader implements Closeable {
+
+    private final DataInputStream in;
+
+    /**
+     * @param input the trace stream, closed together with the reader
+     * @throws IOException if the stream does not start with a trace header
+     */
+    public TraceReader(InputStream input) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != TraceRecorder.MAGIC) {
+            throw new IOException("Not a cache trace");
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record, or null at the end of the trace
+     * @throws IOException if the stream is truncated or cannot be read
+     */
+    public TraceRecord read() throws IOException {
+        long timestamp;
+        try {
+            timestamp = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        TraceOp op = TraceOp.fromCode(in.readUnsignedByte());
+        int keyHash = in.readInt();
+        int valueSize = in.readInt();
+        return new TraceRecord(timestamp, op, keyHash, valueSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,43 @@
+package com.lanlan.cache.trace;
+
+/**
+ * One cache operation in a workload trace.
+ * Keys are stored as hashes only, so traces carry no cache contents.
+ */
+public class TraceRecord {
+    // Size of an encoded record: timestamp, op, key hash, value size
+    public static final int BYTES = Long.BYTES + 1 + Integer.BYTES + Integer.BYTES;
+
+    // System.nanoTime() at which the operation happened
+    private final long timestamp;
+
+    private final TraceOp op;
+
+    private final int keyHash;
+
+    // Length of the value written or returned, 0 on a miss or remove
+    private final int valueSize;
+
+    public TraceRecord(long timestamp, TraceOp op, int keyHash, int valueSize) {
+        this.timestamp = timestamp;
+        this.op = op;
+        this.keyHash = keyHash;
+        this.valueSize = valueSize;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public TraceOp getOp() {
+        return op;
+    }
+
+    public int getKeyHash() {
+        return keyHash;
+    }
+
+    public int getValueSize() {
+        return valueSize;
+    }
+}
@@ -0,0 +1,203 @@
+package com.lanlan.cache.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records cache operations to a compact binary stream.
+ * Callers encode a record into a per-thread stripe of a fixed buffer; a background thread
+ * swaps the stripes out and does the I/O. Recording allocates nothing, and threads on
+ * different stripes do not share a lock. When a stripe is full, records are dropped and
+ * counted instead of blocking the caller.
+ *
+ * <p>Records from one thread are written in the order they were recorded. Records from
+ * different stripes are merged by timestamp within each drain, so the stream is ordered
+ * to within one drain interval.
+ *
+ * <p>Stream layout: the {@link #MAGIC} header followed by fixed-size records of
+ * timestamp (long), op (byte), key hash (int) and value size (int).
+ */
+public class TraceRecorder implements Closeable {
+    // "CTRC" - identifies a cache trace stream
+    public static final int MAGIC = 0x43545243;
+
+    // Pause between drains, which bounds how long a record waits in its stripe
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe[] stripes;
+
+    private final DataOutputStream out;
+
+    private final Thread writer;
+
+    // Records discarded because their stripe was full or the recorder was closed
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    private volatile boolean closed = false;
+
+    private volatile IOException failure;
+
+    /**
+     * Creates a recorder writing to the given stream.
+     *
+     * @param output the destination, closed together with the recorder
+     * @param queueCapacity number of records buffered before records are dropped
+     * @throws IOException if the header cannot be written
+     */
+    public TraceRecorder(OutputStream output, int queueCapacity) throws IOException {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        int stripeCount = 1;
+        int limit = Math.min(Math.min(MAX_STRIPES, queueCapacity), Runtime.getRuntime().availableProcessors() * 2);
+        while (stripeCount * 2 <= limit) {
+            stripeCount *= 2;
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(queueCapacity / stripeCount);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        this.writer = new Thread(this::drain, "cache-trace-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records one operation. Never blocks.
+     *
+     * @param op the operation
+     * @param keyHash hash of the key
+     * @param valueSize length of the value involved, 0 if none
+     */
+    public void record(TraceOp op, int keyHash, int valueSize) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        if (!stripe.offer(op, keyHash, valueSize)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of records dropped so far.
+     *
+     * @return the dropped record count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void drain() {
+        ByteBuffer[] batches = new ByteBuffer[stripes.length];
+        try {
+            while (true) {
+                boolean last = closed;
+                for (int i = 0; i < stripes.length; i++) {
+                    batches[i] = stripes[i].swap(last);
+                }
+                write(batches);
+                if (last) {
+                    return;
+                }
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    // Merges the stripes' batches by timestamp; each batch is already in order
+    private void write(ByteBuffer[] batches) throws IOException {
+        while (true) {
+            ByteBuffer next = null;
+            for (ByteBuffer batch : batches) {
+                if (batch.hasRemaining()
+                        && (next == null || batch.getLong(batch.position()) < next.getLong(next.position()))) {
+                    next = batch;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            out.write(next.array(), next.position(), TraceRecord.BYTES);
+            next.position(next.position() + TraceRecord.BYTES);
+        }
+        for (ByteBuffer batch : batches) {
+            batch.clear();
+        }
+    }
+
+    /**
+     * A double-buffered slice of the recorder's capacity. Callers fill one buffer under the
+     * stripe's lock while the writer thread owns the other.
+     */
+    private static final class Stripe {
+        private ByteBuffer filling;
+
+        private ByteBuffer spare;
+
+        private boolean closed = false;
+
+        Stripe(int capacity) {
+            this.filling = ByteBuffer.allocate(capacity * TraceRecord.BYTES);
+            this.spare = ByteBuffer.allocate(capacity * TraceRecord.BYTES);
+        }
+
+        synchronized boolean offer(TraceOp op, int keyHash, int valueSize) {
+            if (closed || filling.remaining() < TraceRecord.BYTES) {
+                return false;
+            }
+            // Taken under the lock, so each stripe is in timestamp order
+            filling.putLong(System.nanoTime())
+                    .put((byte) op.ordinal())
+                    .putInt(keyHash)
+                    .putInt(valueSize);
+            return true;
+        }
+
+        /**
+         * Hands the filled buffer, flipped for reading, to the writer and starts filling the
+         * one it has finished with.
+         *
+         * @param close whether to refuse records from now on
+         */
+        synchronized ByteBuffer swap(boolean close) {
+            ByteBuffer full = filling;
+            filling = spare;
+            spare = full;
+            closed = close;
+            return full.flip();
+        }
+    }
+
+    /**
+     * Writes the remaining buffered records and closes the stream.
+     *
+     * @throws IOException if writing the trace failed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } finally {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.lanlan.cache.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountingBloomFilterTest {
+
+    private CountingBloomFilter<String> filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new CountingBloomFilter<>(1000, 0.01);
+    }
+
+    @Test
+    void testAddAndRemove() {
+        assertFalse(filter.mightContain("key1"));
+        filter.add("key1");
+        assertTrue(filter.mightContain("key1"));
+        filter.remove("key1");
+        assertFalse(filter.mightContain("key1"));
+    }
+
+    @Test
+    void testNoFalseNegatives() {
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            filter.remove("key" + i);
+        }
+        for (int i = 1; i < 1000; i += 2) {
+            assertTrue(filter.mightContain("key" + i), "Remaining keys must never be reported absent");
+        }
+    }
+
+    @Test
+    void testFalsePositiveRate() {
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("missing" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 500, "False positive rate should stay near the configured 1%");
+    }
+}
@@ -1,8 +1,12 @@
 package com.lanlan.cache.core;
 
+import com.lanlan.cache.config.CacheConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -117,4 +121,214 @@ class CuckooHashCacheTest {
         assertTrue(cache.getEvictionCount() > 0, "Some evictions should have occurred during concurrent access");
         assertTrue(cache.getSize() <= 10, "Cache size should not exceed double the capacity");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetAndSet() {
+        assertEquals(Optional.empty(), cache.getAndSet("key1", "value1"));
+        assertEquals(Optional.of("value1"), cache.getAndSet("key1", "value2"));
+        assertEquals(Optional.of("value2"), cache.get("key1"));
+    }
+
+    @Test
+    void testPutIfAbsent() {
+        assertEquals(Optional.empty(), cache.putIfAbsent("key1", "value1"));
+        assertEquals(Optional.of("value1"), cache.putIfAbsent("key1", "value2"));
+        assertEquals(Optional.of("value1"), cache.get("key1"));
+    }
+
+    @Test
+    void testCompareAndSet() {
+        assertFalse(cache.compareAndSet("key1", "value1", "value2"), "Absent keys should never match");
+        cache.put("key1", "value1");
+        assertFalse(cache.compareAndSet("key1", "other", "value2"));
+        assertTrue(cache.compareAndSet("key1", "value1", "value2"));
+        assertEquals(Optional.of("value2"), cache.get("key1"));
+    }
+
+    @Test
+    void testNullValuesRejected() {
+        cache.put("key1", "value1");
+        assertThrows(NullPointerException.class, () -> cache.compareAndSet("key1", "value1", null));
+        assertThrows(NullPointerException.class, () -> cache.getAndSet("key1", null));
+        assertThrows(NullPointerException.class, () -> cache.putIfAbsent("key2", null));
+        assertThrows(NullPointerException.class, () -> cache.merge("key1", null, (a, b) -> a));
+        assertThrows(NullPointerException.class, () -> cache.merge("key1", "x", (a, b) -> null));
+        assertThrows(NullPointerException.class, () -> cache.put("key2", null));
+        assertEquals(Optional.of("value1"), cache.get("key1"));
+        assertFalse(cache.get("key2").isPresent());
+    }
+
+    @Test
+    void testConcurrentMerge() throws InterruptedException {
+        CuckooHashCache<String, Integer> counters = new CuckooHashCache<>(5);
+        int threadCount = 10;
+        int operationsPerThread = 1000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                try {
+                    for (int j = 0; j < operationsPerThread; j++) {
+                        counters.merge("counter", 1, Integer::sum);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        executorService.shutdown();
+
+        assertEquals(Optional.of(threadCount * operationsPerThread), counters.get("counter"),
+                "No increment should be lost under contention");
+    }
+
+    @Test
+    void testScanPagination() {
+        CuckooHashCache<String, String> large = new CuckooHashCache<>(1000);
+        for (int i = 0; i < 500; i++) {
+            large.put("key" + i, "value" + i);
+        }
+
+        Set<String> seen = new HashSet<>();
+        int cursor = 0;
+        int pages = 0;
+        do {
+            ScanResult<String, String> result = large.scan(cursor, 10, key -> true);
+            result.getEntries().forEach(entry -> seen.add(entry.getKey()));
+            cursor = result.getCursor();
+            pages++;
+        } while (cursor != 0);
+
+        assertEquals(500, seen.size(), "A quiescent scan should see every key");
+        assertTrue(pages > 1, "The scan should span several pages");
+    }
+
+    @Test
+    void testScanRejectsEmptyPages() {
+        cache.put("key1", "value1");
+        assertThrows(IllegalArgumentException.class, () -> cache.scan(0, 0, key -> true));
+        assertThrows(IllegalArgumentException.class, () -> cache.scan(128, -1, key -> true));
+    }
+
+    @Test
+    void testIterator() {
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+
+        Set<String> keys = new HashSet<>();
+        for (Map.Entry<String, String> entry : cache) {
+            keys.add(entry.getKey());
+        }
+        assertEquals(Set.of("key1", "key2"), keys);
+    }
+
+    @Test
+    void testRemoveIf() {
+        cache.put("user:1:a", "value1");
+        cache.put("user:1:b", "value2");
+        cache.put("user:2:a", "value3");
+
+        assertEquals(2, cache.removeIf(key -> key.startsWith("user:1:")));
+        assertEquals(Optional.empty(), cache.get("user:1:a"));
+        assertEquals(Optional.of("value3"), cache.get("user:2:a"));
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    void testExpiration() throws InterruptedException {
+        CuckooHashCache<String, String> expiring = new CuckooHashCache<>(new CacheConfig(5, 50));
+        expiring.put("key1", "value1");
+        assertEquals(Optional.of("value1"), expiring.get("key1"));
+
+        Thread.sleep(100);
+        assertEquals(Optional.empty(), expiring.get("key1"), "Expired entries should not be returned");
+
+        expiring.put("key1", "value2");
+        assertEquals(Optional.of("value2"), expiring.get("key1"));
+    }
+
+    @Test
+    void testAtomicWritesRestartTimeToLive() throws InterruptedException {
+        CuckooHashCache<String, String> expiring = new CuckooHashCache<>(new CacheConfig(10, 300));
+        for (int i = 1; i <= 4; i++) {
+            expiring.put("key" + i, "value" + i);
+        }
+
+        Thread.sleep(180);
+        expiring.getAndSet("key1", "set");
+        assertTrue(expiring.compareAndSet("key2", "value2", "swapped"));
+        expiring.merge("key3", "-merged", String::concat);
+        assertFalse(expiring.compareAndSet("key4", "other", "swapped"));
+
+        // 360 ms after the puts, 180 ms after the updates
+        Thread.sleep(180);
+        assertEquals(Optional.of("set"), expiring.get("key1"));
+        assertEquals(Optional.of("swapped"), expiring.get("key2"));
+        assertEquals(Optional.of("value3-merged"), expiring.get("key3"));
+        assertEquals(Optional.empty(), expiring.get("key4"), "A failed CAS must not extend the time to live");
+    }
+
+    @Test
+    void testMaxEntriesQuota() {
+        CacheConfig config = new CacheConfig(100, 0);
+        config.setMaxEntries(10);
+        CuckooHashCache<String, String> quota = new CuckooHashCache<>(config);
+
+        for (int i = 0; i < 50; i++) {
+            quota.put("key" + i, "value" + i);
+        }
+        assertEquals(10, quota.getSize(), "Size should be capped at the quota");
+        assertEquals(40, quota.getEvictionCount());
+
+        // Lowering the quota shrinks the cache on subsequent inserts
+        quota.setMaxEntries(5);
+        for (int i = 50; i < 60; i++) {
+            quota.put("key" + i, "value" + i);
+        }
+        assertEquals(5, quota.getSize());
+    }
+
+    @Test
+    void testRandomEvictionPolicy() {
+        CacheConfig config = new CacheConfig(100, 0);
+        config.setMaxEntries(10);
+        config.setEvictionPolicy(EvictionPolicy.RANDOM);
+        CuckooHashCache<String, String> random = new CuckooHashCache<>(config);
+
+        for (int i = 0; i < 50; i++) {
+            random.put("key" + i, "value" + i);
+        }
+        assertEquals(10, random.getSize());
+        assertEquals(Optional.of("value49"), random.get("key49"), "The latest insert should never be the victim");
+    }
+
+    @Test
+    void testNegativeLookupFilter() {
+        CacheConfig config = new CacheConfig(50, 0);
+        config.setNegativeLookupFilter(true);
+        CuckooHashCache<String, String> filtered = new CuckooHashCache<>(config);
+
+        assertFalse(filtered.mightContain("key1"));
+        filtered.put("key1", "value1");
+        assertTrue(filtered.mightContain("key1"));
+        filtered.remove("key1");
+        assertFalse(filtered.mightContain("key1"));
+
+        // Churn through evictions, displacements and removals
+        for (int i = 0; i < 1000; i++) {
+            filtered.put("key" + i, "value" + i);
+            if (i % 3 == 0) {
+                filtered.remove("key" + (i / 2));
+            }
+        }
+
+        // Every stored entry must still be reachable through the filter
+        for (Map.Entry<String, String> entry : filtered) {
+            assertTrue(filtered.mightContain(entry.getKey()));
+            assertEquals(Optional.of(entry.getValue()), filtered.get(entry.getKey()));
+        }
+    }
+}
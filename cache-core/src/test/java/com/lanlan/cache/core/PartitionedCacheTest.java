@@ -0,0 +1,133 @@
+package com.lanlan.cache.core;
+
+import com.lanlan.cache.config.CacheConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedCacheTest {
+
+    private PartitionedCache<String, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        CacheConfig config = new CacheConfig(10000, 0);
+        config.setPartitions(4);
+        cache = new PartitionedCache<>(config);
+    }
+
+    @Test
+    void testCreateFromConfig() {
+        CacheConfig config = new CacheConfig(100, 0);
+        assertTrue(Cache.create(config) instanceof CuckooHashCache);
+        config.setPartitions(4);
+        assertTrue(Cache.create(config) instanceof PartitionedCache);
+    }
+
+    @Test
+    void testPutGetRemove() {
+        cache.put("key1", "value1");
+        assertEquals(Optional.of("value1"), cache.get("key1"));
+        cache.remove("key1");
+        assertEquals(Optional.empty(), cache.get("key1"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testScanAcrossShards() {
+        for (int i = 0; i < 500; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        assertEquals(500, cache.getSize());
+
+        Set<String> seen = new HashSet<>();
+        int cursor = 0;
+        do {
+            ScanResult<String, String> result = cache.scan(cursor, 50, key -> true);
+            result.getEntries().forEach(entry -> seen.add(entry.getKey()));
+            cursor = result.getCursor();
+        } while (cursor != 0);
+        assertEquals(500, seen.size());
+
+        int iterated = 0;
+        for (Map.Entry<String, String> ignored : cache) {
+            iterated++;
+        }
+        assertEquals(500, iterated);
+
+        assertEquals(111, cache.removeIf(key -> key.startsWith("key1")));
+        assertEquals(389, cache.getSize());
+    }
+
+    @Test
+    void testQuotaIsSplitAcrossShards() {
+        cache.setMaxEntries(100);
+        assertEquals(100, cache.getMaxEntries());
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        assertTrue(cache.getSize() <= 100, "Every shard should respect its share of the quota");
+        assertTrue(cache.getEvictionCount() >= 900);
+    }
+
+    @Test
+    void testShardAffinity() throws Exception {
+        CacheConfig config = new CacheConfig(1000, 0);
+        config.setPartitions(2);
+        PartitionedCache<String, String> affine = new PartitionedCache<>(config, true);
+        try {
+            affine.submit("key1", shard -> {
+                shard.put("key1", "value1");
+                return null;
+            }).get();
+            String thread = affine.submit("key1", shard -> Thread.currentThread().getName()).get();
+            assertTrue(thread.startsWith("cache-shard-"));
+            assertEquals(Optional.of("value1"), affine.submit("key1", shard -> shard.get("key1")).get());
+            assertEquals(Optional.of("value1"), affine.get("key1"));
+        } finally {
+            affine.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentAccess() throws InterruptedException {
+        int threadCount = 8;
+        int operationsPerThread = 1000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            final int threadId = i;
+            executorService.submit(() -> {
+                try {
+                    for (int j = 0; j < operationsPerThread; j++) {
+                        cache.merge("counter" + (j % 16), "x", String::concat);
+                        if (j % 4 == 0) {
+                            cache.put("key" + threadId + "-" + j, "value");
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        executorService.shutdown();
+
+        int appended = 0;
+        for (int i = 0; i < 16; i++) {
+            appended += cache.get("counter" + i).map(String::length).orElse(0);
+        }
+        assertEquals(threadCount * operationsPerThread, appended, "No update should be lost across shards");
+    }
+}
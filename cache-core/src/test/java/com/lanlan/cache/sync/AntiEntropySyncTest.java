@@ -0,0 +1,192 @@
+package com.lanlan.cache.sync;
+
+import com.lanlan.cache.core.CuckooHashCache;
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AntiEntropySyncTest {
+
+    private static final int KEYS = 2000;
+
+    private CuckooHashCache<String, String> local;
+    private MerkleTree<String, String> localTree;
+    private CuckooHashCache<String, String> remote;
+    private MerkleTree<String, String> remoteTree;
+
+    @BeforeEach
+    void setUp() {
+        local = new CuckooHashCache<>(10000);
+        localTree = new MerkleTree<>(256);
+        local.setCacheListener(localTree);
+        remote = new CuckooHashCache<>(10000);
+        remoteTree = new MerkleTree<>(256);
+        remote.setCacheListener(remoteTree);
+        for (int i = 0; i < KEYS; i++) {
+            local.put("key" + i, "value" + i);
+            remote.put("key" + i, "value" + i);
+        }
+    }
+
+    @Test
+    void testTreeTracksContentNotHistory() {
+        assertArrayEquals(localTree.nodeHashes(new int[]{1}), remoteTree.nodeHashes(new int[]{1}));
+
+        local.put("key1", "changed");
+        assertNotEquals(remoteTree.nodeHashes(new int[]{1})[0], localTree.nodeHashes(new int[]{1})[0]);
+
+        local.put("key1", "value1");
+        local.put("extra", "x");
+        local.remove("extra");
+        assertArrayEquals(localTree.nodeHashes(new int[]{1}), remoteTree.nodeHashes(new int[]{1}));
+    }
+
+    @Test
+    void testValuesWithEqualHashCodesDiffer() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        local.put("key1", "Aa");
+        remote.put("key1", "BB");
+        assertNotEquals(remoteTree.nodeHashes(new int[]{1})[0], localTree.nodeHashes(new int[]{1})[0]);
+
+        new AntiEntropySync<>(local, localTree, 100).pullFrom(new LocalSyncPeer<>(remote, remoteTree));
+        assertEquals(Optional.of("BB"), local.get("key1"));
+    }
+
+    @Test
+    void testInSyncReplicasExchangeOnlyTheRoot() {
+        SyncReport report = new AntiEntropySync<>(local, localTree, 100)
+                .pullFrom(new LocalSyncPeer<>(remote, remoteTree));
+        assertEquals(1, report.getDigestsFetched());
+        assertEquals(0, report.getEntriesTransferred());
+    }
+
+    @Test
+    void testPullRepairsDivergedReplica() {
+        // Writes the local replica missed, plus one it kept after the remote removed the key
+        remote.put("key7", "updated");
+        remote.put("key42", "updated");
+        remote.put("new-key", "new");
+        remote.remove("key99");
+        local.put("stale-key", "stale");
+
+        SyncReport report = new AntiEntropySync<>(local, localTree, 100)
+                .pullFrom(new LocalSyncPeer<>(remote, remoteTree));
+
+        assertEquals(contents(remote), contents(local));
+        assertArrayEquals(remoteTree.nodeHashes(new int[]{1}), localTree.nodeHashes(new int[]{1}));
+        assertTrue(report.getBucketsRepaired() <= 5);
+        assertEquals(5, report.getEntriesUpdated());
+    }
+
+    @Test
+    void testDeltaSyncTransfersFarLessThanFullResync() {
+        for (int i = 0; i < 20; i++) {
+            remote.put("key" + (i * 97), "updated" + i);
+        }
+        MeteredPeer peer = new MeteredPeer(new LocalSyncPeer<>(remote, remoteTree));
+        SyncReport report = new AntiEntropySync<>(local, localTree, 100).pullFrom(peer);
+        assertEquals(contents(remote), contents(local));
+        assertEquals(peer.digests, report.getDigestsFetched());
+
+        long fullResync = 0;
+        for (Map.Entry<String, String> entry : remote) {
+            fullResync += entry.getKey().length() + entry.getValue().length();
+        }
+        assertTrue(peer.bytes * 5 < fullResync, peer.bytes + " bytes vs full resync " + fullResync);
+    }
+
+    @Test
+    void testLeafCountMismatchAbortsBeforeChangingAnything() {
+        CuckooHashCache<String, String> wide = new CuckooHashCache<>(10000);
+        MerkleTree<String, String> wideTree = new MerkleTree<>(512);
+        wide.setCacheListener(wideTree);
+        for (int i = 0; i < KEYS; i++) {
+            wide.put("key" + i, "value" + i);
+        }
+        wide.put("key1", "changed");
+
+        AntiEntropySync<String, String> sync = new AntiEntropySync<>(local, localTree, 100);
+        assertThrows(LeafCountMismatchException.class, () -> sync.pullFrom(new LocalSyncPeer<>(wide, wideTree)));
+        assertEquals(KEYS, local.getSize());
+        assertEquals(Optional.of("value1"), local.get("key1"));
+    }
+
+    @Test
+    void testRejectsNodesOutsideTheTree() {
+        assertThrows(IllegalArgumentException.class, () -> localTree.nodeHashes(new int[]{0}));
+        assertThrows(IllegalArgumentException.class, () -> localTree.nodeHashes(new int[]{512}));
+        assertThrows(IllegalArgumentException.class, () -> localTree.nodeHashes(new int[]{-1}));
+        assertEquals(1, localTree.nodeHashes(new int[]{511}).length);
+    }
+
+    @Test
+    void testKeyWrittenDuringPullSurvives() {
+        remote.put("key7", "updated");
+        int bucket = localTree.bucketOf("key7");
+        String written = IntStream.range(0, 100_000).mapToObj(i -> "written" + i)
+                .filter(key -> localTree.bucketOf(key) == bucket)
+                .findFirst()
+                .orElseThrow();
+
+        // A client writes to the bucket being repaired while its entries are in flight
+        SyncPeer<String, String> peer = new LocalSyncPeer<>(remote, remoteTree) {
+            @Override
+            public ScanResult<String, String> entries(int[] buckets, int cursor, int batchSize) {
+                local.put(written, "fresh");
+                return super.entries(buckets, cursor, batchSize);
+            }
+        };
+        new AntiEntropySync<>(local, localTree, 100).pullFrom(peer);
+
+        assertEquals(Optional.of("updated"), local.get("key7"));
+        assertEquals(Optional.of("fresh"), local.get(written));
+    }
+
+    private static Map<String, String> contents(CuckooHashCache<String, String> cache) {
+        Map<String, String> contents = new HashMap<>();
+        for (Map.Entry<String, String> entry : cache) {
+            contents.put(entry.getKey(), entry.getValue());
+        }
+        return contents;
+    }
+
+    /**
+     * Counts what a peer would put on the wire: 4 bytes per requested node or bucket,
+     * 8 bytes per hash, and the key and value characters of each entry.
+     */
+    private static class MeteredPeer implements SyncPeer<String, String> {
+
+        private final SyncPeer<String, String> delegate;
+        private long bytes;
+        private int digests;
+
+        MeteredPeer(SyncPeer<String, String> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long[] nodeHashes(int leafCount, int[] nodes) {
+            bytes += 4L * nodes.length + 8L * nodes.length;
+            digests += nodes.length;
+            return delegate.nodeHashes(leafCount, nodes);
+        }
+
+        @Override
+        public ScanResult<String, String> entries(int[] buckets, int cursor, int batchSize) {
+            ScanResult<String, String> batch = delegate.entries(buckets, cursor, batchSize);
+            bytes += 4L * buckets.length + 8;
+            for (Map.Entry<String, String> entry : batch.getEntries()) {
+                bytes += entry.getKey().length() + entry.getValue().length();
+            }
+            return batch;
+        }
+    }
+}
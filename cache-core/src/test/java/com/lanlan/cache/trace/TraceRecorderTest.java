@@ -0,0 +1,89 @@
+package com.lanlan.cache.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceRecorderTest {
+
+    @Test
+    void testRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TraceRecorder recorder = new TraceRecorder(bytes, 1024)) {
+            recorder.record(TraceOp.PUT, "key1".hashCode(), 6);
+            recorder.record(TraceOp.GET, "key1".hashCode(), 6);
+            recorder.record(TraceOp.REMOVE, "key1".hashCode(), 0);
+        }
+
+        assertEquals(Integer.BYTES + 3 * TraceRecord.BYTES, bytes.size(), "Records should use a fixed compact layout");
+
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            TraceRecord put = reader.read();
+            assertEquals(TraceOp.PUT, put.getOp());
+            assertEquals("key1".hashCode(), put.getKeyHash());
+            assertEquals(6, put.getValueSize());
+
+            TraceRecord get = reader.read();
+            assertEquals(TraceOp.GET, get.getOp());
+            assertTrue(get.getTimestamp() >= put.getTimestamp());
+
+            assertEquals(TraceOp.REMOVE, reader.read().getOp());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    void testConcurrentRecordsKeepPerThreadOrder() throws Exception {
+        int threads = 4;
+        int perThread = 5000;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceRecorder recorder = new TraceRecorder(bytes, threads * perThread);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    recorder.record(TraceOp.GET, thread * perThread + i, thread);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        recorder.close();
+
+        int[] next = new int[threads];
+        int read = 0;
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (TraceRecord record = reader.read(); record != null; record = reader.read()) {
+                int thread = record.getValueSize();
+                assertTrue(record.getKeyHash() >= thread * perThread + next[thread],
+                        "Records of one thread should be written in order");
+                next[thread] = record.getKeyHash() - thread * perThread + 1;
+                read++;
+            }
+        }
+        assertEquals(threads * perThread, read + recorder.getDroppedCount(), "Every record should be written or counted as dropped");
+    }
+
+    @Test
+    void testRecordAfterCloseIsDropped() throws IOException {
+        TraceRecorder recorder = new TraceRecorder(new ByteArrayOutputStream(), 16);
+        recorder.close();
+        recorder.record(TraceOp.GET, 1, 0);
+        assertEquals(1, recorder.getDroppedCount());
+    }
+
+    @Test
+    void testRejectsForeignStream() {
+        byte[] garbage = {1, 2, 3, 4, 5};
+        assertThrows(IOException.class, () -> new TraceReader(new ByteArrayInputStream(garbage)));
+    }
+}
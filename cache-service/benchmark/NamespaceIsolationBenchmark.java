@@ -0,0 +1,160 @@
+import com.lanlan.cache.config.CacheConfig;
+import com.lanlan.cache.config.CacheProperties;
+import com.lanlan.cache.service.CacheService;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the hit rate and get latency of a quiet namespace that ramps up while a noisy
+ * namespace bulk-loads, with both under one cache.max-total-entries budget.
+ *
+ * <p>The quiet namespace idles with a few keys for two governor intervals, so the governor
+ * lends most of its share to the noisy one. Then it starts serving a working set smaller
+ * than its share, cache-aside: a miss is filled with a put. Each line reports one second.
+ *
+ * <p>Usage, after {@code mvn -pl cache-core,cache-service -am compile}:
+ * {@code java -cp cache-core/target/classes:cache-service/target/classes cache-service/benchmark/NamespaceIsolationBenchmark.java [interval-ms] [seconds]}
+ */
+public class NamespaceIsolationBenchmark {
+
+    private static final int QUOTA = 50_000;
+
+    private static final int BUDGET = 50_000;
+
+    private static final int IDLE_KEYS = 1_000;
+
+    // Below the quiet namespace's share of about BUDGET / 2
+    private static final int WORKING_SET = 20_000;
+
+    private static final int NOISY_THREADS = 2;
+
+    // Every SAMPLE_EVERY-th quiet get is timed
+    private static final int SAMPLE_EVERY = 16;
+
+    public static void main(String[] args) throws Exception {
+        long interval = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+
+        CacheService service = newService();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        // Stands in for the @Scheduled governor run
+        Thread governor = new Thread(() -> {
+            while (running.get()) {
+                service.rebalance();
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        LongAdder noisyPuts = new LongAdder();
+        List<Thread> noisy = new ArrayList<>();
+        for (int t = 0; t < NOISY_THREADS; t++) {
+            int thread = t;
+            noisy.add(new Thread(() -> {
+                long i = 0;
+                while (running.get()) {
+                    service.put("noisy", "bulk" + thread + "-" + i++, "value");
+                    noisyPuts.increment();
+                }
+            }));
+        }
+
+        for (int i = 0; i < IDLE_KEYS; i++) {
+            service.put("quiet", "hot" + i, "value");
+        }
+        governor.start();
+        noisy.forEach(Thread::start);
+        Thread.sleep(2 * interval);
+        System.out.printf("interval %d ms, budget %d, quotas %d each, quiet working set %d, %d noisy writers, %d CPUs%n",
+                interval, BUDGET, QUOTA, WORKING_SET, NOISY_THREADS, Runtime.getRuntime().availableProcessors());
+        System.out.printf("before ramp-up: quiet size %d, noisy size %d%n", service.getSize("quiet"), service.getSize("noisy"));
+        System.out.printf("%-4s %10s %10s %10s %12s %12s %14s%n",
+                "s", "hit rate", "p50 us", "p99 us", "quiet size", "noisy size", "quiet evicted");
+
+        long hits = 0;
+        long lookups = 0;
+        int quietEvictionsBefore = service.getEvictionCount("quiet");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int second = 1; second <= seconds; second++) {
+            long end = System.nanoTime() + 1_000_000_000L;
+            long windowHits = 0;
+            long windowLookups = 0;
+            long[] latencies = new long[1 << 20];
+            int sampled = 0;
+            while (System.nanoTime() < end) {
+                String key = "hot" + random.nextInt(WORKING_SET);
+                boolean timed = windowLookups % SAMPLE_EVERY == 0 && sampled < latencies.length;
+                long start = timed ? System.nanoTime() : 0;
+                boolean hit = service.get("quiet", key).isPresent();
+                if (timed) {
+                    latencies[sampled++] = System.nanoTime() - start;
+                }
+                if (hit) {
+                    windowHits++;
+                } else {
+                    service.put("quiet", key, "value");
+                }
+                windowLookups++;
+            }
+            long[] sorted = Arrays.copyOf(latencies, sampled);
+            Arrays.sort(sorted);
+            System.out.printf("%-4d %9.1f%% %10.2f %10.2f %12d %12d %14d%n", second,
+                    100.0 * windowHits / windowLookups, percentile(sorted, 50), percentile(sorted, 99),
+                    service.getSize("quiet"), service.getSize("noisy"),
+                    service.getEvictionCount("quiet") - quietEvictionsBefore);
+            hits += windowHits;
+            lookups += windowLookups;
+        }
+
+        running.set(false);
+        governor.interrupt();
+        for (Thread thread : noisy) {
+            thread.join();
+        }
+        // Cold misses of the working set are unavoidable, so report the rate beyond them
+        long avoidable = lookups - hits - WORKING_SET + IDLE_KEYS;
+        System.out.printf("total: %d lookups, hit rate %.2f%%, misses beyond the cold fill %d, noisy puts/s %.0f%n",
+                lookups, 100.0 * hits / lookups, Math.max(0, avoidable),
+                noisyPuts.sum() / (seconds + 2.0 * interval / 1000));
+    }
+
+    private static CacheService newService() throws ReflectiveOperationException {
+        CacheProperties properties = new CacheProperties();
+        for (String name : new String[]{"quiet", "noisy"}) {
+            CacheConfig config = new CacheConfig(QUOTA, 0);
+            config.setMaxEntries(QUOTA);
+            properties.getNamespaces().put(name, config);
+        }
+        properties.setMaxTotalEntries(BUDGET);
+
+        CacheService service = new CacheService();
+        set(service, "cacheCapacity", 5);
+        set(service, "cacheProperties", properties);
+        service.init();
+        return service;
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
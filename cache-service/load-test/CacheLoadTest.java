@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Closed-loop HTTP/1.1 load generator for the /api/cache routes, used to compare the
+ * servlet and reactive front ends at high connection counts.
+ *
+ * <p>Every connection keeps one request in flight: a GET of a random preloaded key, or a
+ * PUT for put-percent of the requests. Connections are opened gradually and reopened when
+ * the server closes them. A single selector thread drives all of them, so the generator
+ * itself needs no more threads as the connection count grows.
+ *
+ * <p>Usage: {@code java CacheLoadTest.java <host> <port> <connections> <seconds> [keys] [put-percent]}
+ */
+public class CacheLoadTest {
+
+    private static final int OPENS_PER_TICK = 200;
+
+    private static final long WARMUP_NANOS = 5_000_000_000L;
+
+    private final InetSocketAddress address;
+    private final String host;
+    private final int keys;
+    private final int putPercent;
+    private final Random random = new Random(42);
+
+    private long measureStart;
+    private long measureEnd;
+
+    // Latencies of the measured responses, in microseconds
+    private long[] latencies = new long[1 << 20];
+    private int latencyCount;
+
+    private int established;
+    private int connectErrors;
+    private int ioErrors;
+    private int closedByServer;
+    private final long[] statuses = new long[600];
+    private int activeConnections;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: java CacheLoadTest.java <host> <port> <connections> <seconds> [keys] [put-percent]");
+            System.exit(1);
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int connections = Integer.parseInt(args[2]);
+        int seconds = Integer.parseInt(args[3]);
+        int keys = args.length > 4 ? Integer.parseInt(args[4]) : 10000;
+        int putPercent = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+
+        CacheLoadTest test = new CacheLoadTest(host, port, keys, putPercent);
+        test.preload();
+        test.run(connections, seconds);
+    }
+
+    CacheLoadTest(String host, int port, int keys, int putPercent) {
+        this.host = host;
+        this.address = new InetSocketAddress(host, port);
+        this.keys = keys;
+        this.putPercent = putPercent;
+    }
+
+    /**
+     * Writes every key once over a blocking connection, so that GETs hit.
+     */
+    private void preload() throws IOException {
+        Response response = new Response();
+        byte[] buffer = new byte[4096];
+        int key = 0;
+        while (key < keys) {
+            try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream();
+                boolean open = true;
+                while (open && key < keys) {
+                    out.write(request(key++, true));
+                    response.reset();
+                    while (!response.isComplete()) {
+                        int read = in.read(buffer);
+                        if (read < 0) {
+                            throw new IOException("Server closed the connection while preloading");
+                        }
+                        response.append(buffer, read);
+                    }
+                    // Reconnect when the server ends the keep-alive connection
+                    open = !response.closes();
+                }
+            }
+        }
+    }
+
+    private void run(int connections, int seconds) throws IOException {
+        Selector selector = Selector.open();
+        long start = System.nanoTime();
+        measureStart = start + WARMUP_NANOS;
+        measureEnd = measureStart + seconds * 1_000_000_000L;
+        int opened = 0;
+        int peakOpen = 0;
+        int open = 0;
+
+        while (System.nanoTime() < measureEnd) {
+            // Ramp up gradually, and replace connections the server closed
+            for (int i = 0; i < OPENS_PER_TICK && open < connections; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                Connection connection = new Connection(channel);
+                try {
+                    if (channel.connect(address)) {
+                        connected(selector, connection);
+                    } else {
+                        channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                    }
+                    open++;
+                    opened++;
+                } catch (IOException e) {
+                    connectErrors++;
+                    channel.close();
+                    break;
+                }
+            }
+            peakOpen = Math.max(peakOpen, open);
+
+            selector.select(10);
+            Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+            while (selected.hasNext()) {
+                SelectionKey key = selected.next();
+                selected.remove();
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isConnectable()) {
+                        connection.channel.finishConnect();
+                        connected(selector, connection);
+                    } else if (key.isWritable()) {
+                        write(key, connection);
+                    } else if (key.isReadable() && !read(key, connection)) {
+                        close(key, connection);
+                        open--;
+                    }
+                } catch (IOException e) {
+                    if (connection.established) {
+                        ioErrors++;
+                    } else {
+                        connectErrors++;
+                    }
+                    close(key, connection);
+                    open--;
+                }
+            }
+        }
+
+        int pending = 0;
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = (Connection) key.attachment();
+            if (!connection.established) {
+                pending++;
+            }
+            key.channel().close();
+        }
+        selector.close();
+        report(connections, seconds, opened, peakOpen, pending);
+    }
+
+    private void connected(Selector selector, Connection connection) throws IOException {
+        connection.established = true;
+        established++;
+        SelectionKey key = connection.channel.keyFor(selector);
+        if (key == null) {
+            key = connection.channel.register(selector, SelectionKey.OP_WRITE, connection);
+        }
+        send(key, connection);
+    }
+
+    private void send(SelectionKey key, Connection connection) throws IOException {
+        boolean put = random.nextInt(100) < putPercent;
+        connection.out = ByteBuffer.wrap(request(random.nextInt(keys), put));
+        connection.response.reset();
+        connection.sentAt = System.nanoTime();
+        write(key, connection);
+    }
+
+    private void write(SelectionKey key, Connection connection) throws IOException {
+        connection.channel.write(connection.out);
+        key.interestOps(connection.out.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Reads what is available, and sends the next request once the response is complete.
+     *
+     * @return false if the connection must be closed
+     */
+    private boolean read(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        int read = connection.channel.read(buffer);
+        if (read < 0) {
+            closedByServer++;
+            return false;
+        }
+        connection.response.append(buffer.array(), read);
+        if (!connection.response.isComplete()) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        if (connection.sentAt >= measureStart && now < measureEnd) {
+            record((now - connection.sentAt) / 1000);
+            statuses[connection.response.status()]++;
+            if (!connection.measured) {
+                connection.measured = true;
+                activeConnections++;
+            }
+        }
+        if (connection.response.closes()) {
+            closedByServer++;
+            return false;
+        }
+        send(key, connection);
+        return true;
+    }
+
+    private void close(SelectionKey key, Connection connection) throws IOException {
+        key.cancel();
+        connection.channel.close();
+    }
+
+    private void record(long micros) {
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[latencyCount++] = micros;
+    }
+
+    private byte[] request(int key, boolean put) {
+        String path = "/api/cache/load-" + key;
+        String request = put
+                ? "PUT " + path + " HTTP/1.1\r\nHost: " + host + "\r\nContent-Type: text/plain\r\n"
+                        + "Content-Length: 16\r\n\r\nvalue-0123456789"
+                : "GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n";
+        return request.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void report(int connections, int seconds, int opened, int peakOpen, int pending) {
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        System.out.printf("connections requested      %d%n", connections);
+        System.out.printf("connections established    %d (opened %d, peak open %d, still connecting %d)%n",
+                established, opened, peakOpen, pending);
+        System.out.printf("connections served         %d (got a response during the measurement)%n", activeConnections);
+        System.out.printf("requests                   %d in %d s%n", latencyCount, seconds);
+        System.out.printf("throughput                 %.0f req/s%n", latencyCount / (double) seconds);
+        System.out.printf("latency p50/p90/p99/p99.9  %.2f / %.2f / %.2f / %.2f ms%n",
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9));
+        System.out.printf("latency max                %.2f ms%n", sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+        StringBuilder byStatus = new StringBuilder();
+        for (int status = 0; status < statuses.length; status++) {
+            if (statuses[status] > 0) {
+                byStatus.append(' ').append(status).append('=').append(statuses[status]);
+            }
+        }
+        System.out.printf("responses by status       %s%n", byStatus);
+        System.out.printf("connect errors             %d%n", connectErrors);
+        System.out.printf("i/o errors                 %d%n", ioErrors);
+        System.out.printf("closed by server           %d%n", closedByServer);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    private static class Connection {
+        final SocketChannel channel;
+        final Response response = new Response();
+        ByteBuffer out;
+        long sentAt;
+        boolean established;
+        boolean measured;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Accumulates one HTTP/1.1 response, delimited by Content-Length or chunked encoding.
+     */
+    private static class Response {
+        private byte[] data = new byte[1024];
+        private int length;
+        private int headerEnd = -1;
+        private int status;
+        private int contentLength = -1;
+        private boolean chunked;
+        private boolean close;
+
+        void reset() {
+            length = 0;
+            headerEnd = -1;
+            status = 0;
+            contentLength = -1;
+            chunked = false;
+            close = false;
+        }
+
+        void append(byte[] bytes, int count) {
+            if (length + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+            }
+            System.arraycopy(bytes, 0, data, length, count);
+            length += count;
+            if (headerEnd < 0) {
+                parseHeaders();
+            }
+        }
+
+        private void parseHeaders() {
+            for (int i = 3; i < length; i++) {
+                if (data[i - 3] == '\r' && data[i - 2] == '\n' && data[i - 1] == '\r' && data[i] == '\n') {
+                    headerEnd = i + 1;
+                    break;
+                }
+            }
+            if (headerEnd < 0) {
+                return;
+            }
+            String[] lines = new String(data, 0, headerEnd, StandardCharsets.US_ASCII).split("\r\n");
+            status = Integer.parseInt(lines[0].split(" ")[1]);
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i].toLowerCase();
+                if (line.startsWith("content-length:")) {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                } else if (line.startsWith("transfer-encoding:") && line.contains("chunked")) {
+                    chunked = true;
+                } else if (line.startsWith("connection:") && line.contains("close")) {
+                    close = true;
+                }
+            }
+        }
+
+        boolean isComplete() {
+            if (headerEnd < 0) {
+                return false;
+            }
+            if (chunked) {
+                return length >= headerEnd + 5 && data[length - 5] == '0' && data[length - 4] == '\r'
+                        && data[length - 3] == '\n' && data[length - 2] == '\r' && data[length - 1] == '\n';
+            }
+            return length >= headerEnd + Math.max(contentLength, 0);
+        }
+
+        int status() {
+            return status;
+        }
+
+        boolean closes() {
+            return close;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+#!/bin/bash
+# Runs CacheLoadTest against the servlet and the reactive front end in turn.
+#
+# Usage: cache-service/load-test/run.sh [connections] [seconds]
+#
+# The service is started with $CACHE_SERVICE_CMD, by default the jar built by
+# "mvn -pl cache-service -am package". The generator runs on the same host, so
+# both compete for the same CPUs; compare modes, not absolute numbers.
+set -e
+
+CONNECTIONS=${1:-10000}
+SECONDS_PER_RUN=${2:-30}
+PORT=${PORT:-18080}
+KEYS=${KEYS:-10000}
+PUT_PERCENT=${PUT_PERCENT:-10}
+DIR=$(cd "$(dirname "$0")" && pwd)
+CACHE_SERVICE_CMD=${CACHE_SERVICE_CMD:-"java -jar $DIR/../target/cache-service-1.0-SNAPSHOT.jar"}
+
+# Each connection needs a descriptor on both ends
+ulimit -n $((CONNECTIONS * 2 + 1024)) 2>/dev/null || true
+
+for MODE in servlet reactive; do
+    echo "=== $MODE: $CONNECTIONS connections, $SECONDS_PER_RUN s ==="
+    $CACHE_SERVICE_CMD --server.port=$PORT --spring.main.web-application-type=$MODE \
+        --cache.capacity=$((KEYS * 2)) --logging.level.root=WARN > "/tmp/cache-service-$MODE.log" 2>&1 &
+    SERVICE_PID=$!
+    until curl -s -o /dev/null "http://127.0.0.1:$PORT/api/cache/stats"; do
+        sleep 1
+    done
+
+    java "$DIR/CacheLoadTest.java" 127.0.0.1 $PORT $CONNECTIONS $SECONDS_PER_RUN $KEYS $PUT_PERCENT &
+    LOAD_PID=$!
+
+    # Peak server threads and resident memory while the load runs
+    PEAK_THREADS=0
+    PEAK_RSS_KB=0
+    while kill -0 $LOAD_PID 2>/dev/null; do
+        THREADS=$(awk '/^Threads/ {print $2}' /proc/$SERVICE_PID/status)
+        RSS_KB=$(awk '/^VmRSS/ {print $2}' /proc/$SERVICE_PID/status)
+        [ "$THREADS" -gt "$PEAK_THREADS" ] && PEAK_THREADS=$THREADS
+        [ "$RSS_KB" -gt "$PEAK_RSS_KB" ] && PEAK_RSS_KB=$RSS_KB
+        sleep 1
+    done
+    wait $LOAD_PID
+    echo "server peak threads        $PEAK_THREADS"
+    echo "server peak rss            $((PEAK_RSS_KB / 1024)) MB"
+    echo "server stats               $(curl -s "http://127.0.0.1:$PORT/api/cache/stats")"
+
+    kill $SERVICE_PID
+    wait $SERVICE_PID 2>/dev/null || true
+done
@@ -1,9 +1,14 @@
 package com.lanlan.cache;
 
+import com.lanlan.cache.config.CacheProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableConfigurationProperties(CacheProperties.class)
 //@EnableDiscoveryClient
 public class CacheServiceApplication {
 
@@ -0,0 +1,89 @@
+package com.lanlan.cache.client;
+
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.CacheException;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import com.lanlan.cache.sync.SyncPeer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A remote cache-service node, reached through its /api/cache/sync endpoints.
+ */
+public class HttpSyncPeer implements SyncPeer<String, String> {
+
+    private final RestTemplate restTemplate;
+
+    private final String baseUrl;
+
+    /**
+     * @param restTemplate client used for the requests
+     * @param baseUrl the peer's address, e.g. http://cache-2:8080
+     */
+    public HttpSyncPeer(RestTemplate restTemplate, String baseUrl) {
+        this.restTemplate = restTemplate;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public long[] nodeHashes(int leafCount, int[] nodes) {
+        DigestsRequest request = new DigestsRequest();
+        request.leafCount = leafCount;
+        request.nodes = nodes;
+        try {
+            return restTemplate.postForObject(baseUrl + "/api/cache/sync/digests", request, long[].class);
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new LeafCountMismatchException(baseUrl + ": " + e.getResponseBodyAsString());
+        } catch (RestClientException e) {
+            throw new CacheException("Cannot fetch digests from " + baseUrl, e);
+        }
+    }
+
+    @Override
+    public ScanResult<String, String> entries(int[] buckets, int cursor, int batchSize) {
+        EntriesRequest request = new EntriesRequest();
+        request.buckets = buckets;
+        request.cursor = cursor;
+        request.count = batchSize;
+        try {
+            EntriesPage page = restTemplate.postForObject(baseUrl + "/api/cache/sync/entries", request, EntriesPage.class);
+            List<Map.Entry<String, String>> entries = page.entries.entrySet().stream()
+                    .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList());
+            return new ScanResult<>(page.cursor, entries);
+        } catch (RestClientException e) {
+            throw new CacheException("Cannot fetch entries from " + baseUrl, e);
+        }
+    }
+
+    /**
+     * Body of POST /api/cache/sync/digests.
+     */
+    public static class DigestsRequest {
+        public int leafCount;
+        public int[] nodes;
+    }
+
+    /**
+     * Body of POST /api/cache/sync/entries.
+     */
+    public static class EntriesRequest {
+        public int[] buckets;
+        public int cursor;
+        public int count;
+    }
+
+    /**
+     * Response of POST /api/cache/sync/entries, in the shape of a scan page.
+     */
+    public static class EntriesPage {
+        public int cursor;
+        public Map<String, String> entries;
+    }
+}
@@ -0,0 +1,59 @@
+package com.lanlan.cache.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Namespace settings bound from the {@code cache.*} properties.
+ */
+@ConfigurationProperties(prefix = "cache")
+public class CacheProperties {
+    // Named caches served under /api/cache/{namespace}/{key}, each with its own tables
+    private Map<String, CacheConfig> namespaces = new LinkedHashMap<>();
+
+    // Entry budget shared by all namespaces, 0 for no global limit
+    private long maxTotalEntries;
+
+    private AntiEntropy antiEntropy = new AntiEntropy();
+
+    public Map<String, CacheConfig> getNamespaces() {
+        return namespaces;
+    }
+
+    public void setNamespaces(Map<String, CacheConfig> namespaces) {
+        this.namespaces = namespaces;
+    }
+
+    public long getMaxTotalEntries() {
+        return maxTotalEntries;
+    }
+
+    public void setMaxTotalEntries(long maxTotalEntries) {
+        this.maxTotalEntries = maxTotalEntries;
+    }
+
+    public AntiEntropy getAntiEntropy() {
+        return antiEntropy;
+    }
+
+    public void setAntiEntropy(AntiEntropy antiEntropy) {
+        this.antiEntropy = antiEntropy;
+    }
+
+    public static class AntiEntropy {
+        // Base URLs of the nodes this node may pull from, e.g. http://cache-2:8080
+        private List<String> peers = new ArrayList<>();
+
+        public List<String> getPeers() {
+            return peers;
+        }
+
+        public void setPeers(List<String> peers) {
+            this.peers = peers;
+        }
+    }
+}
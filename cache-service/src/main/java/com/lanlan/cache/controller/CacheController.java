@@ -1,16 +1,31 @@
 package com.lanlan.cache.controller;
 
+import com.lanlan.cache.client.HttpSyncPeer;
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.CacheException;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import com.lanlan.cache.exception.NamespaceNotFoundException;
 import com.lanlan.cache.service.CacheService;
+import com.lanlan.cache.sync.SyncReport;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/cache")
 public class CacheController {
 
     private final CacheService cacheService;
 
+    private final RestTemplate restTemplate = new RestTemplate();
+
     @Autowired
     public CacheController(CacheService cacheService) {
         this.cacheService = cacheService;
@@ -24,9 +39,20 @@ public class CacheController {
 
     @GetMapping("/{key}")
     public ResponseEntity<String> get(@PathVariable String key) {
+        // 410 tells callers the backend has no value either, so they can skip their lookup
         return cacheService.get(key)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElseGet(() -> cacheService.isKnownAbsent(key)
+                        ? ResponseEntity.status(HttpStatus.GONE).build()
+                        : ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{key}/absent")
+    public ResponseEntity<Void> markAbsent(@PathVariable String key) {
+        if (cacheService.markAbsent(key)) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
     }
 
     @DeleteMapping("/{key}")
@@ -35,12 +61,149 @@ public class CacheController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/{key}/incr")
+    public ResponseEntity<Long> increment(@PathVariable String key, @RequestParam(defaultValue = "1") long delta) {
+        try {
+            return ResponseEntity.ok(cacheService.incrementBy(key, delta));
+        } catch (CacheException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/{key}/cas")
+    public ResponseEntity<Void> compareAndSet(@PathVariable String key, @RequestBody CompareAndSetRequest request) {
+        if (request.value == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (cacheService.compareAndSet(key, request.expected, request.value)) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @PostMapping("/{key}/put-if-absent")
+    public ResponseEntity<String> putIfAbsent(@PathVariable String key, @RequestBody String value) {
+        return cacheService.putIfAbsent(key, value)
+                .map(existing -> ResponseEntity.status(HttpStatus.CONFLICT).body(existing))
+                .orElse(ResponseEntity.ok().build());
+    }
+
+    @PostMapping("/{key}/append")
+    public ResponseEntity<String> append(@PathVariable String key, @RequestBody String value) {
+        return ResponseEntity.ok(cacheService.append(key, value));
+    }
+
+    @PostMapping("/{key}/getset")
+    public ResponseEntity<String> getAndSet(@PathVariable String key, @RequestBody String value) {
+        return cacheService.getAndSet(key, value)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.noContent().build());
+    }
+
+    // On the bare collection path, like the prefix delete, so no key is shadowed
+    @GetMapping
+    public ResponseEntity<ScanPage> scan(@RequestParam(defaultValue = "0") int cursor,
+                                         @RequestParam(defaultValue = "100") int count,
+                                         @RequestParam(defaultValue = "") String prefix) {
+        if (count < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new ScanPage(cacheService.scan(cursor, count, prefix)));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Integer> removeByPrefix(@RequestParam String prefix) {
+        // Every key starts with the empty prefix
+        if (prefix.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(cacheService.removeByPrefix(prefix));
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<CacheStats> getStats() {
         CacheStats stats = new CacheStats(cacheService.getSize(), cacheService.getEvictionCount());
         return ResponseEntity.ok(stats);
     }
 
+    @PostMapping("/sync/digests")
+    public ResponseEntity<?> syncDigests(@RequestBody HttpSyncPeer.DigestsRequest request) {
+        if (!cacheService.isAntiEntropyEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        if (request.nodes == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(cacheService.syncDigests(request.leafCount, request.nodes));
+        } catch (LeafCountMismatchException e) {
+            // The trees bucket keys differently, so the caller must not repair from this node
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/sync/entries")
+    public ResponseEntity<ScanPage> syncEntries(@RequestBody HttpSyncPeer.EntriesRequest request) {
+        if (!cacheService.isAntiEntropyEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        if (request.buckets == null || request.count < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new ScanPage(cacheService.syncEntries(request.buckets, request.cursor, request.count)));
+    }
+
+    @PostMapping("/sync/pull")
+    public ResponseEntity<SyncReport> pullFrom(@RequestParam String peer) {
+        if (!cacheService.isAntiEntropyEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        if (!cacheService.isSyncPeer(peer)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(cacheService.pullFrom(new HttpSyncPeer(restTemplate, peer)));
+        } catch (LeafCountMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (CacheException e) {
+            // The peer was unreachable or answered with an error
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+    }
+
+    @PutMapping("/{namespace}/{key}")
+    public ResponseEntity<Void> put(@PathVariable String namespace, @PathVariable String key,
+                                    @RequestBody String value) {
+        cacheService.put(namespace, key, value);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/{namespace}/{key}")
+    public ResponseEntity<String> get(@PathVariable String namespace, @PathVariable String key) {
+        return cacheService.get(namespace, key)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{namespace}/{key}")
+    public ResponseEntity<Void> remove(@PathVariable String namespace, @PathVariable String key) {
+        cacheService.remove(namespace, key);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/{namespace}/stats")
+    public ResponseEntity<CacheStats> getStats(@PathVariable String namespace) {
+        CacheStats stats = new CacheStats(cacheService.getSize(namespace), cacheService.getEvictionCount(namespace));
+        return ResponseEntity.ok(stats);
+    }
+
+    @ExceptionHandler(NamespaceNotFoundException.class)
+    public ResponseEntity<String> namespaceNotFound(NamespaceNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
     static class CacheStats {
         public final int size;
         public final int evictionCount;
@@ -50,4 +213,19 @@ public class CacheController {
             this.evictionCount = evictionCount;
         }
     }
+
+    static class ScanPage {
+        public final int cursor;
+        public final Map<String, String> entries = new LinkedHashMap<>();
+
+        public ScanPage(ScanResult<String, String> result) {
+            this.cursor = result.getCursor();
+            result.getEntries().forEach(entry -> entries.put(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    static class CompareAndSetRequest {
+        public String expected;
+        public String value;
+    }
 }
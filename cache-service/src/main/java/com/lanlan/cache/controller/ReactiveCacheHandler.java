@@ -0,0 +1,275 @@
+package com.lanlan.cache.controller;
+
+import com.lanlan.cache.client.HttpSyncPeer;
+import com.lanlan.cache.exception.CacheException;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import com.lanlan.cache.exception.NamespaceNotFoundException;
+import com.lanlan.cache.service.CacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link CacheController}, served by Netty when
+ * {@code spring.main.web-application-type=reactive}.
+ * Anything that can walk the tables runs on the bounded elastic scheduler, so that it
+ * cannot stall the other connections of its event loop: scans, prefix deletes, sync
+ * requests, and writes that may insert, since an insert at the entry quota scans for an
+ * eviction victim under the write lock.
+ * Lookups, removes and CAS run directly on the event loop while their namespace is below
+ * its quota. At the quota they would wait for those scans, so they start on the bounded
+ * elastic scheduler too. With shard affinity, default namespace lookups run on the key's
+ * shard worker, the response continuing when the worker completes.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCacheHandler {
+
+    private final CacheService cacheService;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @Autowired
+    public ReactiveCacheHandler(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    public Mono<ServerResponse> put(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return request.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(value -> {
+                    cacheService.put(key, value);
+                    return ServerResponse.ok().build();
+                });
+    }
+
+    public Mono<ServerResponse> get(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return lookup(CacheService.DEFAULT_NAMESPACE, () -> cacheService.getAsync(key))
+                .flatMap(value -> value
+                        .map(found -> ServerResponse.ok().bodyValue(found))
+                        .orElseGet(() -> cacheService.isKnownAbsent(key)
+                                ? ServerResponse.status(HttpStatus.GONE).build()
+                                : ServerResponse.notFound().build()));
+    }
+
+    public Mono<ServerResponse> markAbsent(ServerRequest request) {
+        return cacheService.markAbsent(request.pathVariable("key"))
+                ? ServerResponse.ok().build()
+                : ServerResponse.status(HttpStatus.NOT_IMPLEMENTED).build();
+    }
+
+    public Mono<ServerResponse> remove(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return lookup(CacheService.DEFAULT_NAMESPACE, () -> cacheService.removeAsync(key))
+                .then(ServerResponse.ok().build());
+    }
+
+    public Mono<ServerResponse> increment(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return offloaded(() -> {
+            try {
+                long delta = request.queryParam("delta").map(Long::parseLong).orElse(1L);
+                return ServerResponse.ok().bodyValue(cacheService.incrementBy(key, delta));
+            } catch (NumberFormatException | CacheException e) {
+                return ServerResponse.badRequest().build();
+            }
+        });
+    }
+
+    public Mono<ServerResponse> compareAndSet(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return request.bodyToMono(CacheController.CompareAndSetRequest.class)
+                .flatMap(cas -> {
+                    if (cas.value == null) {
+                        return ServerResponse.badRequest().build();
+                    }
+                    return lookup(CacheService.DEFAULT_NAMESPACE,
+                            () -> cacheService.compareAndSetAsync(key, cas.expected, cas.value))
+                            .flatMap(swapped -> swapped
+                                    ? ServerResponse.ok().build()
+                                    : ServerResponse.status(HttpStatus.CONFLICT).build());
+                });
+    }
+
+    public Mono<ServerResponse> putIfAbsent(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return request.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(value -> cacheService.putIfAbsent(key, value)
+                        .map(existing -> ServerResponse.status(HttpStatus.CONFLICT).bodyValue(existing))
+                        .orElseGet(() -> ServerResponse.ok().build()));
+    }
+
+    public Mono<ServerResponse> append(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return request.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(value -> ServerResponse.ok().bodyValue(cacheService.append(key, value)));
+    }
+
+    public Mono<ServerResponse> getAndSet(ServerRequest request) {
+        String key = request.pathVariable("key");
+        return request.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(value -> cacheService.getAndSet(key, value)
+                        .map(previous -> ServerResponse.ok().bodyValue(previous))
+                        .orElseGet(() -> ServerResponse.noContent().build()));
+    }
+
+    public Mono<ServerResponse> scan(ServerRequest request) {
+        int cursor;
+        int count;
+        try {
+            cursor = request.queryParam("cursor").map(Integer::parseInt).orElse(0);
+            count = request.queryParam("count").map(Integer::parseInt).orElse(100);
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        if (count < 1) {
+            return ServerResponse.badRequest().build();
+        }
+        String prefix = request.queryParam("prefix").orElse("");
+        return offloaded(() -> ServerResponse.ok()
+                .bodyValue(new CacheController.ScanPage(cacheService.scan(cursor, count, prefix))));
+    }
+
+    public Mono<ServerResponse> removeByPrefix(ServerRequest request) {
+        // Every key starts with the empty prefix
+        return request.queryParam("prefix")
+                .filter(prefix -> !prefix.isEmpty())
+                .map(prefix -> offloaded(() -> ServerResponse.ok().bodyValue(cacheService.removeByPrefix(prefix))))
+                .orElseGet(() -> ServerResponse.badRequest().build());
+    }
+
+    public Mono<ServerResponse> getStats(ServerRequest request) {
+        CacheController.CacheStats stats =
+                new CacheController.CacheStats(cacheService.getSize(), cacheService.getEvictionCount());
+        return ServerResponse.ok().bodyValue(stats);
+    }
+
+    public Mono<ServerResponse> syncDigests(ServerRequest request) {
+        if (!cacheService.isAntiEntropyEnabled()) {
+            return ServerResponse.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        return request.bodyToMono(HttpSyncPeer.DigestsRequest.class)
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(digests -> {
+                    if (digests.nodes == null) {
+                        return ServerResponse.badRequest().build();
+                    }
+                    try {
+                        return ServerResponse.ok().bodyValue(cacheService.syncDigests(digests.leafCount, digests.nodes));
+                    } catch (LeafCountMismatchException e) {
+                        return ServerResponse.status(HttpStatus.CONFLICT).bodyValue(e.getMessage());
+                    } catch (IllegalArgumentException e) {
+                        return ServerResponse.badRequest().build();
+                    }
+                });
+    }
+
+    public Mono<ServerResponse> syncEntries(ServerRequest request) {
+        if (!cacheService.isAntiEntropyEnabled()) {
+            return ServerResponse.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        return request.bodyToMono(HttpSyncPeer.EntriesRequest.class)
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(entries -> entries.buckets == null || entries.count < 1
+                        ? ServerResponse.badRequest().build()
+                        : ServerResponse.ok().bodyValue(new CacheController.ScanPage(
+                                cacheService.syncEntries(entries.buckets, entries.cursor, entries.count))));
+    }
+
+    public Mono<ServerResponse> pullFrom(ServerRequest request) {
+        if (!cacheService.isAntiEntropyEnabled()) {
+            return ServerResponse.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        Optional<String> peer = request.queryParam("peer");
+        if (peer.isEmpty()) {
+            return ServerResponse.badRequest().build();
+        }
+        if (!cacheService.isSyncPeer(peer.get())) {
+            return ServerResponse.status(HttpStatus.FORBIDDEN).build();
+        }
+        // The pull blocks on the peer's responses, so keep it off the event loop
+        return Mono.fromCallable(() -> cacheService.pullFrom(new HttpSyncPeer(restTemplate, peer.get())))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(report -> ServerResponse.ok().bodyValue(report))
+                .onErrorResume(LeafCountMismatchException.class, e -> ServerResponse.status(HttpStatus.CONFLICT).build())
+                .onErrorResume(CacheException.class, e -> ServerResponse.status(HttpStatus.BAD_GATEWAY).build());
+    }
+
+    public Mono<ServerResponse> putInNamespace(ServerRequest request) {
+        String namespace = request.pathVariable("namespace");
+        String key = request.pathVariable("key");
+        return request.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(value -> inNamespace(() -> {
+                    cacheService.put(namespace, key, value);
+                    return ServerResponse.ok().build();
+                }));
+    }
+
+    public Mono<ServerResponse> getFromNamespace(ServerRequest request) {
+        String namespace = request.pathVariable("namespace");
+        String key = request.pathVariable("key");
+        return inNamespace(() -> lookup(namespace, () -> cacheService.getAsync(namespace, key))
+                .flatMap(value -> value
+                        .map(found -> ServerResponse.ok().bodyValue(found))
+                        .orElseGet(() -> ServerResponse.notFound().build())));
+    }
+
+    public Mono<ServerResponse> removeFromNamespace(ServerRequest request) {
+        String namespace = request.pathVariable("namespace");
+        String key = request.pathVariable("key");
+        return inNamespace(() -> lookup(namespace, () -> cacheService.removeAsync(namespace, key))
+                .then(ServerResponse.ok().build()));
+    }
+
+    public Mono<ServerResponse> getNamespaceStats(ServerRequest request) {
+        String namespace = request.pathVariable("namespace");
+        return inNamespace(() -> ServerResponse.ok().bodyValue(new CacheController.CacheStats(
+                cacheService.getSize(namespace), cacheService.getEvictionCount(namespace))));
+    }
+
+    private static Mono<ServerResponse> offloaded(Supplier<Mono<ServerResponse>> action) {
+        return Mono.defer(action).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Starts a lookup, remove or CAS on the event loop, or on the bounded elastic scheduler
+     * while the namespace is at its quota.
+     *
+     * @throws NamespaceNotFoundException if the namespace is not configured
+     */
+    private <T> Mono<T> lookup(String namespace, Supplier<CompletableFuture<T>> operation) {
+        if (!cacheService.mayBlockLookups(namespace)) {
+            return Mono.fromFuture(operation.get());
+        }
+        return Mono.defer(() -> Mono.fromFuture(operation.get())).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<ServerResponse> inNamespace(Supplier<Mono<ServerResponse>> action) {
+        try {
+            return action.get();
+        } catch (NamespaceNotFoundException e) {
+            return ServerResponse.notFound().build();
+        }
+    }
+}
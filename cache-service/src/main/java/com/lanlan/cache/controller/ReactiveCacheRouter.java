@@ -0,0 +1,55 @@
+package com.lanlan.cache.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Maps the /api/cache routes onto {@link ReactiveCacheHandler} in reactive mode.
+ * Literal paths are registered before /{key} so that they take precedence, which makes
+ * GET /api/cache/stats unreachable for a key named "stats". Scans and prefix deletes use
+ * the bare /api/cache path, which no key can take.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCacheRouter {
+
+    /**
+     * Tomcat is on the classpath for servlet mode, and Spring Boot prefers it over Netty
+     * for reactive servers too. Declaring the factory keeps reactive mode on Netty.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> cacheRoutes(ReactiveCacheHandler handler) {
+        return RouterFunctions.route()
+                .GET("/api/cache", handler::scan)
+                .DELETE("/api/cache", handler::removeByPrefix)
+                .path("/api/cache", builder -> builder
+                        .GET("/stats", handler::getStats)
+                        .POST("/sync/digests", handler::syncDigests)
+                        .POST("/sync/entries", handler::syncEntries)
+                        .POST("/sync/pull", handler::pullFrom)
+                        .PUT("/{key}", handler::put)
+                        .GET("/{key}", handler::get)
+                        .DELETE("/{key}", handler::remove)
+                        .POST("/{key}/incr", handler::increment)
+                        .POST("/{key}/cas", handler::compareAndSet)
+                        .POST("/{key}/put-if-absent", handler::putIfAbsent)
+                        .POST("/{key}/append", handler::append)
+                        .POST("/{key}/getset", handler::getAndSet)
+                        .POST("/{key}/absent", handler::markAbsent)
+                        .GET("/{namespace}/stats", handler::getNamespaceStats)
+                        .PUT("/{namespace}/{key}", handler::putInNamespace)
+                        .GET("/{namespace}/{key}", handler::getFromNamespace)
+                        .DELETE("/{namespace}/{key}", handler::removeFromNamespace))
+                .build();
+    }
+}
@@ -1,36 +1,467 @@
 package com.lanlan.cache.service;
 
+import com.lanlan.cache.config.CacheConfig;
+import com.lanlan.cache.config.CacheProperties;
+import com.lanlan.cache.core.Cache;
 import com.lanlan.cache.core.CuckooHashCache;
+import com.lanlan.cache.core.PartitionedCache;
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.CacheException;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import com.lanlan.cache.exception.NamespaceNotFoundException;
+import com.lanlan.cache.sync.AntiEntropySync;
+import com.lanlan.cache.sync.LocalSyncPeer;
+import com.lanlan.cache.sync.MerkleTree;
+import com.lanlan.cache.sync.SyncPeer;
+import com.lanlan.cache.sync.SyncReport;
+import com.lanlan.cache.trace.TraceOp;
+import com.lanlan.cache.trace.TraceRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Service
 public class CacheService {
 
-    private CuckooHashCache<String, String> cache;
+    // Namespace backed by the un-namespaced /api/cache/{key} routes
+    public static final String DEFAULT_NAMESPACE = "default";
+
+    private Cache<String, String> cache;
+
+    // Every namespace, including the default one, has its own tables and lock
+    private final Map<String, Cache<String, String>> namespaces = new ConcurrentHashMap<>();
+
+    // Configured entry quota of each namespace, before the governor scales it
+    private final Map<String, Integer> quotas = new ConcurrentHashMap<>();
+
+    private MemoryGovernor memoryGovernor;
 
     @Value("${cache.capacity:1000}")
     private int cacheCapacity;
 
+    // Shards of the default namespace; more than 1 selects a PartitionedCache
+    @Value("${cache.partitions:1}")
+    private int cachePartitions = 1;
+
+    // Runs default namespace key operations on a worker thread per shard; needs partitions > 1
+    @Value("${cache.shard-affinity:false}")
+    private boolean shardAffinity;
+
+    private PartitionedCache<String, String> shardWorkers;
+
+    @Autowired(required = false)
+    private CacheProperties cacheProperties = new CacheProperties();
+
+    // File to record a workload trace to; tracing is off when empty
+    @Value("${cache.trace.path:}")
+    private String tracePath = "";
+
+    @Value("${cache.trace.queue-capacity:65536}")
+    private int traceQueueCapacity = 65536;
+
+    private TraceRecorder traceRecorder;
+
+    // Negative lookup layer for the default namespace: a Bloom filter over its keys,
+    // plus tombstones for keys the backend confirmed missing
+    @Value("${cache.negative-lookup.enabled:false}")
+    private boolean negativeLookupEnabled;
+
+    @Value("${cache.negative-lookup.tombstone-capacity:10000}")
+    private int tombstoneCapacity = 10000;
+
+    @Value("${cache.negative-lookup.tombstone-ttl-ms:60000}")
+    private long tombstoneTtlMillis = 60000;
+
+    private CuckooHashCache<String, Boolean> tombstones;
+
+    // Merkle tree over the default namespace, so replicas can exchange digests and repair only what differs
+    @Value("${cache.anti-entropy.enabled:false}")
+    private boolean antiEntropyEnabled;
+
+    @Value("${cache.anti-entropy.leaves:1024}")
+    private int merkleLeaves = 1024;
+
+    @Value("${cache.anti-entropy.batch-size:500}")
+    private int syncBatchSize = 500;
+
+    private SyncPeer<String, String> syncPeer;
+
+    private AntiEntropySync<String, String> antiEntropySync;
+
     @PostConstruct
     public void init() {
-        // Initialize the cache with a capacity
-        this.cache = new CuckooHashCache<>(cacheCapacity);
+        // Initialize the cache with a capacity, unless the default namespace is configured explicitly
+        CacheConfig defaultConfig = cacheProperties.getNamespaces().get(DEFAULT_NAMESPACE);
+        if (defaultConfig == null) {
+            defaultConfig = new CacheConfig(cacheCapacity, 0);
+            defaultConfig.setPartitions(cachePartitions);
+        }
+        if (negativeLookupEnabled) {
+            defaultConfig.setNegativeLookupFilter(true);
+
+            // Quota of tombstoneCapacity entries in 2 * tombstoneCapacity slots;
+            // the filter lets clearTombstone skip the lock for keys without a tombstone
+            CacheConfig tombstoneConfig = new CacheConfig(tombstoneCapacity, tombstoneTtlMillis);
+            tombstoneConfig.setMaxEntries(tombstoneCapacity);
+            tombstoneConfig.setNegativeLookupFilter(true);
+            this.tombstones = new CuckooHashCache<>(tombstoneConfig);
+        }
+        if (shardAffinity && defaultConfig.getPartitions() > 1) {
+            this.shardWorkers = new PartitionedCache<>(defaultConfig, true);
+            this.cache = shardWorkers;
+        } else {
+            this.cache = Cache.create(defaultConfig);
+        }
+        if (antiEntropyEnabled) {
+            // Attach before the first write so the tree covers every entry
+            MerkleTree<String, String> merkleTree = new MerkleTree<>(merkleLeaves);
+            cache.setCacheListener(merkleTree);
+            this.syncPeer = new LocalSyncPeer<>(cache, merkleTree);
+            this.antiEntropySync = new AntiEntropySync<>(cache, merkleTree, syncBatchSize);
+        }
+        register(DEFAULT_NAMESPACE, cache);
+        cacheProperties.getNamespaces().forEach((name, config) -> {
+            if (!DEFAULT_NAMESPACE.equals(name)) {
+                register(name, Cache.create(config));
+            }
+        });
+
+        this.memoryGovernor = new MemoryGovernor(cacheProperties.getMaxTotalEntries());
+        rebalance();
+
+        if (!tracePath.isEmpty()) {
+            try {
+                this.traceRecorder = new TraceRecorder(Files.newOutputStream(Paths.get(tracePath)), traceQueueCapacity);
+            } catch (IOException e) {
+                throw new CacheException("Cannot open trace file " + tracePath, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (shardWorkers != null) {
+            shardWorkers.shutdown();
+        }
+        if (traceRecorder != null) {
+            try {
+                traceRecorder.close();
+            } catch (IOException e) {
+                throw new CacheException("Cannot write trace file " + tracePath, e);
+            }
+        }
+    }
+
+    /**
+     * Records an operation in the workload trace, if tracing is enabled.
+     * Keys are hashed together with their namespace so that namespaces do not collide.
+     */
+    private void trace(TraceOp op, String namespace, String key, int valueSize) {
+        if (traceRecorder != null) {
+            traceRecorder.record(op, 31 * namespace.hashCode() + key.hashCode(), valueSize);
+        }
+    }
+
+    /**
+     * Runs an operation on the key's shard worker when shard affinity is enabled,
+     * otherwise on the calling thread against the default namespace.
+     *
+     * @return a future completed with the operation's result; already complete without shard affinity
+     */
+    private <R> CompletableFuture<R> onShard(String key, Function<Cache<String, String>, R> operation) {
+        if (shardWorkers == null) {
+            try {
+                return CompletableFuture.completedFuture(operation.apply(cache));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return shardWorkers.submit(key, operation);
+    }
+
+    /**
+     * Waits for a shard operation, rethrowing its exception as is.
+     */
+    private static <R> R join(CompletableFuture<R> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static int sizeOf(Optional<String> value) {
+        return value.map(String::length).orElse(0);
+    }
+
+    private void register(String namespace, Cache<String, String> namespaceCache) {
+        namespaces.put(namespace, namespaceCache);
+        quotas.put(namespace, namespaceCache.getMaxEntries());
+    }
+
+    /**
+     * Redistributes the global entry budget across namespaces according to their current load.
+     */
+    @Scheduled(fixedDelayString = "${cache.governor-interval-ms:5000}")
+    public void rebalance() {
+        memoryGovernor.rebalance(namespaces, quotas);
+    }
+
+    /**
+     * Before an insert: a namespace at its allotment but below its guaranteed share
+     * takes lent entries back from the governor instead of evicting its own.
+     */
+    private void reserve(String namespace, Cache<String, String> namespaceCache) {
+        if (namespaceCache.getSize() >= namespaceCache.getMaxEntries()) {
+            memoryGovernor.reclaim(namespace, namespaces);
+        }
+    }
+
+    private Cache<String, String> namespace(String namespace) {
+        Cache<String, String> namespaceCache = namespaces.get(namespace);
+        if (namespaceCache == null) {
+            throw new NamespaceNotFoundException(namespace);
+        }
+        return namespaceCache;
+    }
+
+    public void put(String namespace, String key, String value) {
+        if (DEFAULT_NAMESPACE.equals(namespace)) {
+            put(key, value);
+            return;
+        }
+        Cache<String, String> namespaceCache = namespace(namespace);
+        reserve(namespace, namespaceCache);
+        namespaceCache.put(key, value);
+        trace(TraceOp.PUT, namespace, key, value.length());
+    }
+
+    public Optional<String> get(String namespace, String key) {
+        return join(getAsync(namespace, key));
+    }
+
+    /**
+     * Non-blocking {@link #get(String, String)}: with shard affinity, default namespace
+     * lookups complete on the shard's worker instead of blocking the caller.
+     *
+     * @throws NamespaceNotFoundException if the namespace is not configured
+     */
+    public CompletableFuture<Optional<String>> getAsync(String namespace, String key) {
+        if (DEFAULT_NAMESPACE.equals(namespace)) {
+            return getAsync(key);
+        }
+        Optional<String> value = namespace(namespace).get(key);
+        trace(TraceOp.GET, namespace, key, sizeOf(value));
+        return CompletableFuture.completedFuture(value);
+    }
+
+    public void remove(String namespace, String key) {
+        join(removeAsync(namespace, key));
+    }
+
+    /**
+     * Non-blocking {@link #remove(String, String)}.
+     *
+     * @throws NamespaceNotFoundException if the namespace is not configured
+     */
+    public CompletableFuture<Void> removeAsync(String namespace, String key) {
+        if (DEFAULT_NAMESPACE.equals(namespace)) {
+            return removeAsync(key);
+        }
+        namespace(namespace).remove(key);
+        trace(TraceOp.REMOVE, namespace, key, 0);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public int getSize(String namespace) {
+        return namespace(namespace).getSize();
+    }
+
+    /**
+     * Whether a lookup in namespace may have to wait on the calling thread for an eviction:
+     * at its entry quota, every insert scans for a victim under the write lock. Default
+     * namespace lookups with shard affinity wait on the shard workers instead.
+     *
+     * @throws NamespaceNotFoundException if the namespace is not configured
+     */
+    public boolean mayBlockLookups(String namespace) {
+        if (DEFAULT_NAMESPACE.equals(namespace) && shardWorkers != null) {
+            return false;
+        }
+        Cache<String, String> namespaceCache = DEFAULT_NAMESPACE.equals(namespace) ? cache : namespace(namespace);
+        return namespaceCache.getSize() >= namespaceCache.getMaxEntries();
+    }
+
+    public int getEvictionCount(String namespace) {
+        return namespace(namespace).getEvictionCount();
     }
 
     public void put(String key, String value) {
-        cache.put(key, value);
+        reserve(DEFAULT_NAMESPACE, cache);
+        join(onShard(key, shard -> {
+            shard.put(key, value);
+            return null;
+        }));
+        clearTombstone(key);
+        trace(TraceOp.PUT, DEFAULT_NAMESPACE, key, value.length());
     }
 
     public Optional<String> get(String key) {
-        return cache.get(key);
+        return join(getAsync(key));
+    }
+
+    /**
+     * Non-blocking {@link #get(String)}, for callers that must not wait for a shard worker.
+     */
+    public CompletableFuture<Optional<String>> getAsync(String key) {
+        return onShard(key, shard -> shard.get(key)).thenApply(value -> {
+            trace(TraceOp.GET, DEFAULT_NAMESPACE, key, sizeOf(value));
+            return value;
+        });
     }
 
     public void remove(String key) {
-        cache.remove(key);
+        join(removeAsync(key));
+    }
+
+    /**
+     * Non-blocking {@link #remove(String)}.
+     */
+    public CompletableFuture<Void> removeAsync(String key) {
+        return onShard(key, shard -> {
+            shard.remove(key);
+            return (Void) null;
+        }).thenRun(() -> trace(TraceOp.REMOVE, DEFAULT_NAMESPACE, key, 0));
+    }
+
+    /**
+     * Records that the backend has no value for key, so that callers can skip the backend
+     * lookup until the key is written or the tombstone expires.
+     *
+     * @return false if the negative lookup layer is disabled
+     */
+    public boolean markAbsent(String key) {
+        if (tombstones == null) {
+            return false;
+        }
+        tombstones.put(key, Boolean.TRUE);
+        // A concurrent put may have cleared tombstones before this one went in; re-check
+        // after inserting, so that either the put sees the tombstone or this sees the value
+        if (cache.get(key).isPresent()) {
+            tombstones.remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the backend is known to have no value for key.
+     */
+    public boolean isKnownAbsent(String key) {
+        return tombstones != null && tombstones.get(key).isPresent();
+    }
+
+    private void clearTombstone(String key) {
+        // The tombstone filter keeps this a lock-free check for the common case
+        if (tombstones != null && tombstones.mightContain(key)) {
+            tombstones.remove(key);
+        }
+    }
+
+    /**
+     * Atomically adds delta to an integer value, treating an absent key as 0.
+     *
+     * @return the value after the increment
+     * @throws CacheException if the current value is not an integer or the result overflows
+     */
+    public long incrementBy(String key, long delta) {
+        reserve(DEFAULT_NAMESPACE, cache);
+        try {
+            String result = join(onShard(key, shard -> shard.merge(key, Long.toString(delta),
+                    (current, d) -> Long.toString(Math.addExact(Long.parseLong(current), Long.parseLong(d))))));
+            trace(TraceOp.PUT, DEFAULT_NAMESPACE, key, result.length());
+            clearTombstone(key);
+            return Long.parseLong(result);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new CacheException("Value of key '" + key + "' cannot be incremented", e);
+        }
+    }
+
+    public boolean compareAndSet(String key, String expected, String newValue) {
+        return join(compareAndSetAsync(key, expected, newValue));
+    }
+
+    /**
+     * Non-blocking {@link #compareAndSet(String, String, String)}.
+     */
+    public CompletableFuture<Boolean> compareAndSetAsync(String key, String expected, String newValue) {
+        return onShard(key, shard -> shard.compareAndSet(key, expected, newValue)).thenApply(swapped -> {
+            trace(swapped ? TraceOp.PUT : TraceOp.GET, DEFAULT_NAMESPACE, key, swapped ? newValue.length() : 0);
+            return swapped;
+        });
+    }
+
+    public Optional<String> putIfAbsent(String key, String value) {
+        reserve(DEFAULT_NAMESPACE, cache);
+        Optional<String> existing = join(onShard(key, shard -> shard.putIfAbsent(key, value)));
+        if (existing.isEmpty()) {
+            clearTombstone(key);
+        }
+        trace(existing.isPresent() ? TraceOp.GET : TraceOp.PUT, DEFAULT_NAMESPACE, key,
+                existing.map(String::length).orElse(value.length()));
+        return existing;
+    }
+
+    /**
+     * Atomically appends to the current value, creating the key if absent.
+     *
+     * @return the value after the append
+     */
+    public String append(String key, String value) {
+        reserve(DEFAULT_NAMESPACE, cache);
+        String result = join(onShard(key, shard -> shard.merge(key, value, String::concat)));
+        trace(TraceOp.PUT, DEFAULT_NAMESPACE, key, result.length());
+        clearTombstone(key);
+        return result;
+    }
+
+    public Optional<String> getAndSet(String key, String value) {
+        reserve(DEFAULT_NAMESPACE, cache);
+        Optional<String> previous = join(onShard(key, shard -> shard.getAndSet(key, value)));
+        trace(TraceOp.PUT, DEFAULT_NAMESPACE, key, value.length());
+        clearTombstone(key);
+        return previous;
+    }
+
+    /**
+     * Returns one page of keys starting with prefix; pass the returned cursor back to continue.
+     */
+    public ScanResult<String, String> scan(int cursor, int count, String prefix) {
+        return cache.scan(cursor, count, key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Removes every key starting with prefix.
+     *
+     * @return the number of removed keys
+     */
+    public int removeByPrefix(String prefix) {
+        return cache.removeIf(key -> key.startsWith(prefix));
     }
 
     public int getSize() {
@@ -40,4 +471,53 @@ public class CacheService {
     public int getEvictionCount() {
         return cache.getEvictionCount();
     }
+
+    public boolean isAntiEntropyEnabled() {
+        return antiEntropyEnabled;
+    }
+
+    /**
+     * Returns whether a URL is one of the configured cache.anti-entropy.peers.
+     * Only those may be pulled from, since a pull overwrites and deletes local keys.
+     */
+    public boolean isSyncPeer(String url) {
+        return cacheProperties.getAntiEntropy().getPeers().stream()
+                .anyMatch(peer -> stripSlash(peer).equals(stripSlash(url)));
+    }
+
+    private static String stripSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * Returns this node's Merkle tree hashes for the given nodes, for a peer pulling from it.
+     *
+     * @throws LeafCountMismatchException if the caller's tree has a different leaf count
+     * @throws IllegalArgumentException if a node is outside this node's tree
+     */
+    public long[] syncDigests(int leafCount, int[] nodes) {
+        return syncPeer().nodeHashes(leafCount, nodes);
+    }
+
+    /**
+     * Returns one batch of the default namespace's entries in the given Merkle leaf buckets.
+     */
+    public ScanResult<String, String> syncEntries(int[] buckets, int cursor, int count) {
+        return syncPeer().entries(buckets, cursor, count);
+    }
+
+    /**
+     * Repairs the default namespace from a peer, transferring only the buckets whose digests differ.
+     */
+    public SyncReport pullFrom(SyncPeer<String, String> peer) {
+        syncPeer();
+        return antiEntropySync.pullFrom(peer);
+    }
+
+    private SyncPeer<String, String> syncPeer() {
+        if (syncPeer == null) {
+            throw new CacheException("Anti-entropy sync is disabled");
+        }
+        return syncPeer;
+    }
 }
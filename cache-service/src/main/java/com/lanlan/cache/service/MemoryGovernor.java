@@ -0,0 +1,120 @@
+package com.lanlan.cache.service;
+
+import com.lanlan.cache.core.Cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the namespaces of a cache node within a global entry budget.
+ * While the configured quotas fit in the budget every namespace gets its quota.
+ * Under pressure each namespace is guaranteed a share proportional to its quota,
+ * and the unused part of the shares of lightly loaded namespaces is lent to the
+ * namespaces that are full, never beyond their own quota.
+ *
+ * <p>Lent entries are taken back on demand: a namespace that reaches its allotment
+ * while below its share calls {@link #reclaim} before inserting, which restores its
+ * full share at once and lowers the borrowers' allotments by as much. So a namespace
+ * never evicts its own entries below its share; the borrowers shrink back on their
+ * next inserts instead of waiting for the next rebalance.
+ */
+public class MemoryGovernor {
+
+    private final long maxTotalEntries;
+
+    // Guaranteed share of each namespace under pressure; empty while the quotas fit the budget
+    private volatile Map<String, Long> shares = new HashMap<>();
+
+    /**
+     * @param maxTotalEntries the global entry budget, 0 or less for no limit
+     */
+    public MemoryGovernor(long maxTotalEntries) {
+        this.maxTotalEntries = maxTotalEntries;
+    }
+
+    /**
+     * Recomputes and applies the entry quota of every namespace.
+     *
+     * @param caches the namespace caches by name
+     * @param quotas the configured quota of each namespace
+     */
+    public synchronized void rebalance(Map<String, ? extends Cache<?, ?>> caches, Map<String, Integer> quotas) {
+        long requested = quotas.values().stream().mapToLong(Integer::longValue).sum();
+        if (maxTotalEntries <= 0 || requested <= maxTotalEntries) {
+            shares = new HashMap<>();
+            quotas.forEach((name, quota) -> apply(caches, name, quota));
+            return;
+        }
+
+        // Proportional shares; namespaces below their share keep headroom to grow
+        // and lend the rest to the namespaces that have filled theirs
+        Map<String, Long> busy = new HashMap<>();
+        Map<String, Long> computed = new HashMap<>();
+        long spare = 0;
+        long busyShares = 0;
+        for (Map.Entry<String, Integer> quota : quotas.entrySet()) {
+            // Every namespace keeps at least one entry, however small its quota is next to the others
+            long share = Math.max(1, quota.getValue() * maxTotalEntries / requested);
+            computed.put(quota.getKey(), share);
+            long size = caches.get(quota.getKey()).getSize();
+            if (size < share) {
+                long allotment = Math.min(share, size + share / 2);
+                spare += share - allotment;
+                apply(caches, quota.getKey(), allotment);
+            } else {
+                busy.put(quota.getKey(), share);
+                busyShares += share;
+            }
+        }
+
+        shares = computed;
+        if (busyShares == 0) {
+            return;
+        }
+        for (Map.Entry<String, Long> share : busy.entrySet()) {
+            long bonus = spare * share.getValue() / busyShares;
+            apply(caches, share.getKey(), Math.min(quotas.get(share.getKey()), share.getValue() + bonus));
+        }
+    }
+
+    /**
+     * Restores a namespace's full share if it is below it, taking the difference back
+     * from the namespaces that were lent entries. Called before an insert into a
+     * namespace that has reached its allotment.
+     *
+     * @param name the namespace about to insert
+     * @param caches the namespace caches by name
+     */
+    public void reclaim(String name, Map<String, ? extends Cache<?, ?>> caches) {
+        // Full namespaces at or above their share, the common case, return without locking
+        if (!isBelowShare(name, caches)) {
+            return;
+        }
+        synchronized (this) {
+            if (!isBelowShare(name, caches)) {
+                return;
+            }
+            long share = shares.get(name);
+            long needed = share - caches.get(name).getMaxEntries();
+            for (Map.Entry<String, Long> other : shares.entrySet()) {
+                Cache<?, ?> borrower = caches.get(other.getKey());
+                long lent = borrower.getMaxEntries() - other.getValue();
+                if (needed > 0 && lent > 0) {
+                    long returned = Math.min(lent, needed);
+                    apply(caches, other.getKey(), borrower.getMaxEntries() - returned);
+                    needed -= returned;
+                }
+            }
+            apply(caches, name, share);
+        }
+    }
+
+    private boolean isBelowShare(String name, Map<String, ? extends Cache<?, ?>> caches) {
+        Long share = shares.get(name);
+        return share != null && caches.get(name).getMaxEntries() < share;
+    }
+
+    private void apply(Map<String, ? extends Cache<?, ?>> caches, String name, long allotment) {
+        caches.get(name).setMaxEntries((int) Math.max(1, allotment));
+    }
+}
@@ -1,11 +1,20 @@
 package com.lanlan.cache.controller;
 
+import com.lanlan.cache.client.HttpSyncPeer;
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.CacheException;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import com.lanlan.cache.exception.NamespaceNotFoundException;
 import com.lanlan.cache.service.CacheService;
+import com.lanlan.cache.sync.SyncReport;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -62,4 +71,169 @@ class CacheControllerTest {
         assertEquals(5, response.getBody().size);
         assertEquals(2, response.getBody().evictionCount);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIncrement() {
+        when(cacheService.incrementBy("counter", 3)).thenReturn(7L);
+        ResponseEntity<Long> response = cacheController.increment("counter", 3);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(7L, response.getBody());
+    }
+
+    @Test
+    void testIncrementNonNumericValue() {
+        when(cacheService.incrementBy("key1", 1)).thenThrow(new CacheException("not a number"));
+        ResponseEntity<Long> response = cacheController.increment("key1", 1);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testCompareAndSetConflict() {
+        CacheController.CompareAndSetRequest request = new CacheController.CompareAndSetRequest();
+        request.expected = "old";
+        request.value = "new";
+        when(cacheService.compareAndSet("key1", "old", "new")).thenReturn(false);
+        ResponseEntity<Void> response = cacheController.compareAndSet("key1", request);
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    void testCompareAndSetWithoutValue() {
+        CacheController.CompareAndSetRequest request = new CacheController.CompareAndSetRequest();
+        request.expected = "old";
+        ResponseEntity<Void> response = cacheController.compareAndSet("key1", request);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(cacheService, never()).compareAndSet(anyString(), any(), any());
+    }
+
+    @Test
+    void testPutIfAbsentExistingKey() {
+        when(cacheService.putIfAbsent("key1", "value2")).thenReturn(Optional.of("value1"));
+        ResponseEntity<String> response = cacheController.putIfAbsent("key1", "value2");
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("value1", response.getBody());
+    }
+
+    @Test
+    void testScan() {
+        List<Map.Entry<String, String>> entries = List.of(new AbstractMap.SimpleImmutableEntry<>("user:1", "value1"));
+        when(cacheService.scan(0, 100, "user:")).thenReturn(new ScanResult<>(128, entries));
+        ResponseEntity<CacheController.ScanPage> response = cacheController.scan(0, 100, "user:");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(128, response.getBody().cursor);
+        assertEquals("value1", response.getBody().entries.get("user:1"));
+    }
+
+    @Test
+    void testScanWithoutCount() {
+        assertEquals(HttpStatus.BAD_REQUEST, cacheController.scan(128, 0, "").getStatusCode());
+        verify(cacheService, never()).scan(anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    void testRemoveByPrefix() {
+        when(cacheService.removeByPrefix("user:42:")).thenReturn(3);
+        ResponseEntity<Integer> response = cacheController.removeByPrefix("user:42:");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(3, response.getBody());
+    }
+
+    @Test
+    void testRemoveByEmptyPrefix() {
+        assertEquals(HttpStatus.BAD_REQUEST, cacheController.removeByPrefix("").getStatusCode());
+        verify(cacheService, never()).removeByPrefix(anyString());
+    }
+
+    @Test
+    void testPutInNamespace() {
+        ResponseEntity<Void> response = cacheController.put("sessions", "key1", "value1");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(cacheService).put("sessions", "key1", "value1");
+    }
+
+    @Test
+    void testGetFromNamespace() {
+        when(cacheService.get("sessions", "key1")).thenReturn(Optional.of("value1"));
+        ResponseEntity<String> response = cacheController.get("sessions", "key1");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("value1", response.getBody());
+    }
+
+    @Test
+    void testNamespaceNotFound() {
+        ResponseEntity<String> response = cacheController.namespaceNotFound(new NamespaceNotFoundException("missing"));
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testGetKnownAbsentKey() {
+        when(cacheService.get("missing")).thenReturn(Optional.empty());
+        when(cacheService.isKnownAbsent("missing")).thenReturn(true);
+        ResponseEntity<String> response = cacheController.get("missing");
+        assertEquals(HttpStatus.GONE, response.getStatusCode());
+    }
+
+    @Test
+    void testMarkAbsent() {
+        when(cacheService.markAbsent("missing")).thenReturn(true);
+        ResponseEntity<Void> response = cacheController.markAbsent("missing");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    void testMarkAbsentDisabled() {
+        ResponseEntity<Void> response = cacheController.markAbsent("missing");
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, response.getStatusCode());
+    }
+
+    @Test
+    void testSyncDigests() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        when(cacheService.syncDigests(1024, new int[]{1})).thenReturn(new long[]{42L});
+        ResponseEntity<?> response = cacheController.syncDigests(digests(1024, 1));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(42L, ((long[]) response.getBody())[0]);
+    }
+
+    @Test
+    void testSyncDigestsRejectsMismatchedTreesAndUnknownNodes() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        when(cacheService.syncDigests(2048, new int[]{1}))
+                .thenThrow(new LeafCountMismatchException("Peer tree has 1024 leaves, the caller's has 2048"));
+        when(cacheService.syncDigests(1024, new int[]{4096})).thenThrow(new IllegalArgumentException());
+        assertEquals(HttpStatus.CONFLICT, cacheController.syncDigests(digests(2048, 1)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, cacheController.syncDigests(digests(1024, 4096)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, cacheController.syncDigests(new HttpSyncPeer.DigestsRequest()).getStatusCode());
+    }
+
+    @Test
+    void testPullFromMismatchedPeer() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        when(cacheService.isSyncPeer("http://cache-2:8080")).thenReturn(true);
+        when(cacheService.pullFrom(any())).thenThrow(new LeafCountMismatchException("http://cache-2:8080"));
+        assertEquals(HttpStatus.CONFLICT, cacheController.pullFrom("http://cache-2:8080").getStatusCode());
+    }
+
+    @Test
+    void testSyncDisabled() {
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, cacheController.syncDigests(digests(1024, 1)).getStatusCode());
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, cacheController.pullFrom("http://peer:8080").getStatusCode());
+    }
+
+    @Test
+    void testPullFromUnlistedPeer() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        when(cacheService.isSyncPeer("http://attacker:8080")).thenReturn(false);
+        ResponseEntity<SyncReport> response = cacheController.pullFrom("http://attacker:8080");
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(cacheService, never()).pullFrom(any());
+    }
+
+    private static HttpSyncPeer.DigestsRequest digests(int leafCount, int... nodes) {
+        HttpSyncPeer.DigestsRequest request = new HttpSyncPeer.DigestsRequest();
+        request.leafCount = leafCount;
+        request.nodes = nodes;
+        return request;
+    }
+}
@@ -0,0 +1,418 @@
+package com.lanlan.cache.controller;
+
+import com.lanlan.cache.core.PartitionedCache;
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import com.lanlan.cache.exception.NamespaceNotFoundException;
+import com.lanlan.cache.service.CacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReactiveCacheHandlerTest {
+
+    private WebTestClient client;
+    private CacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        cacheService = mock(CacheService.class);
+        when(cacheService.removeAsync(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(cacheService.removeAsync(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        ReactiveCacheHandler handler = new ReactiveCacheHandler(cacheService);
+        client = WebTestClient.bindToRouterFunction(new ReactiveCacheRouter().cacheRoutes(handler)).build();
+    }
+
+    @Test
+    void testPut() {
+        client.put().uri("/api/cache/key1").bodyValue("value1")
+                .exchange()
+                .expectStatus().isOk();
+        verify(cacheService).put("key1", "value1");
+    }
+
+    @Test
+    void testGetExistingKey() {
+        when(cacheService.getAsync("key1")).thenReturn(CompletableFuture.completedFuture(Optional.of("value1")));
+        client.get().uri("/api/cache/key1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("value1");
+    }
+
+    @Test
+    void testGetNonExistentKey() {
+        when(cacheService.getAsync("nonexistent")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        client.get().uri("/api/cache/nonexistent")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testRemove() {
+        client.delete().uri("/api/cache/key1")
+                .exchange()
+                .expectStatus().isOk();
+        verify(cacheService).removeAsync("key1");
+    }
+
+    @Test
+    void testGetStats() {
+        when(cacheService.getSize()).thenReturn(5);
+        when(cacheService.getEvictionCount()).thenReturn(2);
+        client.get().uri("/api/cache/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.size").isEqualTo(5)
+                .jsonPath("$.evictionCount").isEqualTo(2);
+        verify(cacheService, never()).get("stats");
+    }
+
+    @Test
+    void testIncrement() {
+        when(cacheService.incrementBy("counter", 2)).thenReturn(2L);
+        client.post().uri("/api/cache/counter/incr?delta=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).isEqualTo(2L);
+    }
+
+    @Test
+    void testCompareAndSetWithoutValue() {
+        client.post().uri("/api/cache/key1/cas").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"expected\":\"old\"}")
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(cacheService, never()).compareAndSetAsync(anyString(), any(), any());
+    }
+
+    @Test
+    void testCompareAndSet() {
+        when(cacheService.compareAndSetAsync("key1", "old", "new")).thenReturn(CompletableFuture.completedFuture(true));
+        when(cacheService.compareAndSetAsync("key1", "stale", "new")).thenReturn(CompletableFuture.completedFuture(false));
+        client.post().uri("/api/cache/key1/cas").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"expected\":\"old\",\"value\":\"new\"}")
+                .exchange()
+                .expectStatus().isOk();
+        client.post().uri("/api/cache/key1/cas").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"expected\":\"stale\",\"value\":\"new\"}")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void testShardAffinity() {
+        CacheService service = newShardAffineService();
+        WebTestClient affine = WebTestClient
+                .bindToRouterFunction(new ReactiveCacheRouter().cacheRoutes(new ReactiveCacheHandler(service)))
+                .build();
+        try {
+            affine.put().uri("/api/cache/key1").bodyValue("value1").exchange().expectStatus().isOk();
+            affine.get().uri("/api/cache/key1").exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class).isEqualTo("value1");
+            affine.get().uri("/api/cache/default/key1").exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class).isEqualTo("value1");
+            affine.post().uri("/api/cache/key1/cas").contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{\"expected\":\"value1\",\"value\":\"value2\"}")
+                    .exchange()
+                    .expectStatus().isOk();
+            affine.delete().uri("/api/cache/default/key1").exchange().expectStatus().isOk();
+            affine.get().uri("/api/cache/key1").exchange().expectStatus().isNotFound();
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testShardAffinityDoesNotBlockTheCaller() throws Exception {
+        CacheService service = newShardAffineService();
+        ReactiveCacheHandler affine = new ReactiveCacheHandler(service);
+        try {
+            service.put("key1", "value1");
+
+            // Keep key1's shard worker busy; a handler that waited for it would park the caller here
+            CountDownLatch release = new CountDownLatch(1);
+            PartitionedCache<String, String> workers =
+                    (PartitionedCache<String, String>) ReflectionTestUtils.getField(service, "shardWorkers");
+            workers.submit("key1", shard -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+
+            MockServerRequest request = MockServerRequest.builder().pathVariable("key", "key1").build();
+            CompletableFuture<ServerResponse> get = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> affine.get(request).toFuture());
+            CompletableFuture<ServerResponse> remove = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> affine.remove(request).toFuture());
+            assertFalse(get.isDone());
+
+            release.countDown();
+            assertEquals(HttpStatus.OK, get.get(5, TimeUnit.SECONDS).statusCode());
+            assertEquals(HttpStatus.OK, remove.get(5, TimeUnit.SECONDS).statusCode());
+            assertEquals(Optional.empty(), service.get("key1"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testScanRunsOffTheEventLoop() {
+        AtomicReference<String> thread = new AtomicReference<>();
+        when(cacheService.scan(0, 100, "")).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread().getName());
+            return new ScanResult<String, String>(0, Collections.emptyList());
+        });
+        client.get().uri("/api/cache")
+                .exchange()
+                .expectStatus().isOk();
+        assertTrue(thread.get().startsWith("boundedElastic"), "Scan ran on " + thread.get());
+    }
+
+    @Test
+    void testLookupsAtQuotaRunOffTheEventLoop() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(cacheService.mayBlockLookups(CacheService.DEFAULT_NAMESPACE)).thenReturn(true);
+        when(cacheService.getAsync("key1")).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture(Optional.of("value1"));
+        });
+        when(cacheService.removeAsync("key1")).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture(null);
+        });
+        client.get().uri("/api/cache/key1")
+                .exchange()
+                .expectStatus().isOk();
+        client.delete().uri("/api/cache/key1")
+                .exchange()
+                .expectStatus().isOk();
+        assertFalse(threads.isEmpty());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("boundedElastic")), threads.toString());
+    }
+
+    @Test
+    void testPutInNamespace() {
+        client.put().uri("/api/cache/sessions/key1").bodyValue("value1")
+                .exchange()
+                .expectStatus().isOk();
+        verify(cacheService).put("sessions", "key1", "value1");
+    }
+
+    @Test
+    void testGetFromNamespace() {
+        when(cacheService.getAsync("sessions", "key1")).thenReturn(CompletableFuture.completedFuture(Optional.of("value1")));
+        client.get().uri("/api/cache/sessions/key1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("value1");
+    }
+
+    @Test
+    void testRemoveFromNamespace() {
+        client.delete().uri("/api/cache/sessions/key1")
+                .exchange()
+                .expectStatus().isOk();
+        verify(cacheService).removeAsync("sessions", "key1");
+    }
+
+    @Test
+    void testNamespaceStats() {
+        when(cacheService.getSize("sessions")).thenReturn(3);
+        when(cacheService.getEvictionCount("sessions")).thenReturn(1);
+        client.get().uri("/api/cache/sessions/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.size").isEqualTo(3)
+                .jsonPath("$.evictionCount").isEqualTo(1);
+    }
+
+    @Test
+    void testUnknownNamespace() {
+        when(cacheService.getSize("missing")).thenThrow(new NamespaceNotFoundException("missing"));
+        when(cacheService.getAsync("missing", "key1")).thenThrow(new NamespaceNotFoundException("missing"));
+        client.get().uri("/api/cache/missing/stats")
+                .exchange()
+                .expectStatus().isNotFound();
+        client.get().uri("/api/cache/missing/key1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testScan() {
+        List<Map.Entry<String, String>> entries = List.of(new AbstractMap.SimpleImmutableEntry<>("user:1", "value1"));
+        when(cacheService.scan(0, 10, "user:")).thenReturn(new ScanResult<>(128, entries));
+        client.get().uri("/api/cache?cursor=0&count=10&prefix=user:")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.cursor").isEqualTo(128)
+                .jsonPath("$.entries['user:1']").isEqualTo("value1");
+    }
+
+    @Test
+    void testKeyNamedScan() {
+        when(cacheService.getAsync("scan")).thenReturn(CompletableFuture.completedFuture(Optional.of("value1")));
+        client.get().uri("/api/cache/scan")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("value1");
+        verify(cacheService, never()).scan(anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    void testScanRejectsBadParameters() {
+        client.get().uri("/api/cache?count=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+        client.get().uri("/api/cache?cursor=abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(cacheService, never()).scan(anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    void testRemoveByPrefix() {
+        when(cacheService.removeByPrefix("user:42:")).thenReturn(3);
+        client.delete().uri("/api/cache?prefix=user:42:")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Integer.class).isEqualTo(3);
+    }
+
+    @Test
+    void testRemoveByPrefixWithoutPrefix() {
+        client.delete().uri("/api/cache")
+                .exchange()
+                .expectStatus().isBadRequest();
+        client.delete().uri("/api/cache?prefix=")
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(cacheService, never()).removeByPrefix(anyString());
+    }
+
+    @Test
+    void testGetKnownAbsentKey() {
+        when(cacheService.getAsync("missing")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(cacheService.isKnownAbsent("missing")).thenReturn(true);
+        client.get().uri("/api/cache/missing")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GONE);
+    }
+
+    @Test
+    void testMarkAbsent() {
+        when(cacheService.markAbsent("missing")).thenReturn(true);
+        client.post().uri("/api/cache/missing/absent")
+                .exchange()
+                .expectStatus().isOk();
+        verify(cacheService).markAbsent("missing");
+    }
+
+    @Test
+    void testMarkAbsentDisabled() {
+        client.post().uri("/api/cache/missing/absent")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_IMPLEMENTED);
+    }
+
+    @Test
+    void testSyncDigests() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        when(cacheService.syncDigests(1024, new int[]{1, 2})).thenReturn(new long[]{7L, 8L});
+        client.post().uri("/api/cache/sync/digests").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"leafCount\":1024,\"nodes\":[1,2]}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(long[].class).isEqualTo(new long[]{7L, 8L});
+    }
+
+    @Test
+    void testSyncDigestsRejectsMismatchedTreesAndUnknownNodes() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        when(cacheService.syncDigests(2048, new int[]{1}))
+                .thenThrow(new LeafCountMismatchException("Peer tree has 1024 leaves, the caller's has 2048"));
+        when(cacheService.syncDigests(1024, new int[]{4096})).thenThrow(new IllegalArgumentException());
+        client.post().uri("/api/cache/sync/digests").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"leafCount\":2048,\"nodes\":[1]}")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+        client.post().uri("/api/cache/sync/digests").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"leafCount\":1024,\"nodes\":[4096]}")
+                .exchange()
+                .expectStatus().isBadRequest();
+        client.post().uri("/api/cache/sync/digests").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"leafCount\":1024}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testSyncEntries() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        List<Map.Entry<String, String>> entries = List.of(new AbstractMap.SimpleImmutableEntry<>("key1", "value1"));
+        when(cacheService.syncEntries(new int[]{3}, 0, 50)).thenReturn(new ScanResult<>(0, entries));
+        client.post().uri("/api/cache/sync/entries").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"buckets\":[3],\"cursor\":0,\"count\":50}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.cursor").isEqualTo(0)
+                .jsonPath("$.entries.key1").isEqualTo("value1");
+    }
+
+    @Test
+    void testSyncDisabled() {
+        client.post().uri("/api/cache/sync/digests").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"leafCount\":1024,\"nodes\":[1]}")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_IMPLEMENTED);
+    }
+
+    @Test
+    void testPullFromUnlistedPeer() {
+        when(cacheService.isAntiEntropyEnabled()).thenReturn(true);
+        client.post().uri("/api/cache/sync/pull?peer=http://attacker:8080")
+                .exchange()
+                .expectStatus().isForbidden();
+        verify(cacheService, never()).pullFrom(any());
+    }
+
+    private static CacheService newShardAffineService() {
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 1000);
+        ReflectionTestUtils.setField(service, "cachePartitions", 4);
+        ReflectionTestUtils.setField(service, "shardAffinity", true);
+        service.init();
+        return service;
+    }
+}
@@ -1,11 +1,32 @@
 package com.lanlan.cache.service;
 
+import com.lanlan.cache.config.CacheConfig;
+import com.lanlan.cache.config.CacheProperties;
+import com.lanlan.cache.core.Cache;
+import com.lanlan.cache.core.CacheListener;
+import com.lanlan.cache.core.PartitionedCache;
+import com.lanlan.cache.core.ScanResult;
+import com.lanlan.cache.exception.CacheException;
+import com.lanlan.cache.exception.LeafCountMismatchException;
+import com.lanlan.cache.exception.NamespaceNotFoundException;
+import com.lanlan.cache.sync.SyncPeer;
+import com.lanlan.cache.sync.SyncReport;
+import com.lanlan.cache.trace.TraceOp;
+import com.lanlan.cache.trace.TraceReader;
+import com.lanlan.cache.trace.TraceRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Ref;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -87,4 +108,335 @@ class CacheServiceTest {
         assertTrue(cacheService.getEvictionCount() > 0
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIncrementBy() {
+        assertEquals(1, cacheService.incrementBy("counter", 1));
+        assertEquals(6, cacheService.incrementBy("counter", 5));
+        assertEquals(Optional.of("6"), cacheService.get("counter"));
+    }
+
+    @Test
+    void testIncrementNonNumericValue() {
+        cacheService.put("key1", "value1");
+        assertThrows(CacheException.class, () -> cacheService.incrementBy("key1", 1));
+        assertEquals(Optional.of("value1"), cacheService.get("key1"));
+    }
+
+    @Test
+    void testAppend() {
+        assertEquals("ab", cacheService.append("key1", "ab"));
+        assertEquals("abcd", cacheService.append("key1", "cd"));
+    }
+
+    @Test
+    void testScanAndRemoveByPrefix() {
+        cacheService.put("user:42:name", "alice");
+        cacheService.put("user:42:mail", "a@example.com");
+        cacheService.put("user:7:name", "bob");
+
+        ScanResult<String, String> result = cacheService.scan(0, 100, "user:42:");
+        assertEquals(0, result.getCursor());
+        assertEquals(2, result.getEntries().size());
+
+        assertEquals(2, cacheService.removeByPrefix("user:42:"));
+        assertFalse(cacheService.get("user:42:name").isPresent());
+        assertTrue(cacheService.get("user:7:name").isPresent());
+    }
+
+    @Test
+    void testNamespaceIsolation() {
+        CacheProperties properties = new CacheProperties();
+        properties.getNamespaces().put("quiet", new CacheConfig(100, 0));
+        properties.getNamespaces().put("noisy", new CacheConfig(100, 0));
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 5);
+        ReflectionTestUtils.setField(service, "cacheProperties", properties);
+        service.init();
+
+        for (int i = 0; i < 50; i++) {
+            service.put("quiet", "hot" + i, "value" + i);
+        }
+        // Bulk load into the noisy namespace, far beyond its capacity
+        for (int i = 0; i < 10000; i++) {
+            service.put("noisy", "bulk" + i, "value" + i);
+        }
+
+        int hits = 0;
+        for (int i = 0; i < 50; i++) {
+            if (service.get("quiet", "hot" + i).isPresent()) {
+                hits++;
+            }
+        }
+        assertEquals(50, hits, "A noisy namespace must not evict another namespace's entries");
+        assertEquals(0, service.getEvictionCount("quiet"));
+        assertTrue(service.getEvictionCount("noisy") > 0);
+        assertFalse(service.get("noisy", "hot0").isPresent());
+    }
+
+    @Test
+    void testQuietNamespaceRampsUpUnderGlobalBudget() {
+        CacheProperties properties = new CacheProperties();
+        CacheConfig quiet = new CacheConfig(1000, 0);
+        quiet.setMaxEntries(500);
+        CacheConfig noisy = new CacheConfig(1000, 0);
+        noisy.setMaxEntries(500);
+        properties.getNamespaces().put("quiet", quiet);
+        properties.getNamespaces().put("noisy", noisy);
+        properties.setMaxTotalEntries(500);
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 5);
+        ReflectionTestUtils.setField(service, "cacheProperties", properties);
+        service.init();
+
+        // While quiet is idle, the governor lends most of its share to noisy
+        for (int i = 0; i < 20; i++) {
+            service.put("quiet", "hot" + i, "value" + i);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 5000; i++) {
+                service.put("noisy", "bulk" + round + "-" + i, "value" + i);
+            }
+            service.rebalance();
+        }
+        for (int i = 0; i < 1000; i++) {
+            service.put("noisy", "more" + i, "value" + i);
+        }
+        assertTrue(service.getSize("noisy") > 300, "noisy should have borrowed quiet's spare share");
+
+        // quiet ramps up to just under its share of 247 before the next rebalance
+        for (int i = 20; i < 240; i++) {
+            service.put("quiet", "hot" + i, "value" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            service.put("noisy", "last" + i, "value" + i);
+        }
+
+        for (int i = 0; i < 240; i++) {
+            assertTrue(service.get("quiet", "hot" + i).isPresent(), "hot" + i + " was evicted");
+        }
+        assertEquals(0, service.getEvictionCount("quiet"));
+        assertTrue(service.getSize("quiet") + service.getSize("noisy") + service.getSize() <= 500,
+                "The borrower should shrink back within the budget");
+    }
+
+    @Test
+    void testDefaultNamespace() {
+        cacheService.put("key1", "value1");
+        assertEquals(Optional.of("value1"), cacheService.get(CacheService.DEFAULT_NAMESPACE, "key1"));
+    }
+
+    @Test
+    void testUnknownNamespace() {
+        assertThrows(NamespaceNotFoundException.class, () -> cacheService.get("missing", "key1"));
+    }
+
+    @Test
+    void testTraceRecording() throws IOException {
+        Path trace = Files.createTempFile("cache", ".trace");
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 5);
+        ReflectionTestUtils.setField(service, "tracePath", trace.toString());
+        service.init();
+
+        service.put("key1", "value1");
+        service.get("key1");
+        service.get("missing");
+        service.remove("key1");
+        service.shutdown();
+
+        try (InputStream in = Files.newInputStream(trace); TraceReader reader = new TraceReader(in)) {
+            TraceRecord put = reader.read();
+            assertEquals(TraceOp.PUT, put.getOp());
+            assertEquals(6, put.getValueSize());
+            assertEquals(6, reader.read().getValueSize());
+            assertEquals(0, reader.read().getValueSize(), "Misses should be recorded with size 0");
+            assertEquals(TraceOp.REMOVE, reader.read().getOp());
+            assertNull(reader.read());
+        } finally {
+            Files.delete(trace);
+        }
+    }
+
+    @Test
+    void testKnownAbsent() {
+        assertFalse(cacheService.markAbsent("missing"), "Tombstones should be off by default");
+
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 5);
+        ReflectionTestUtils.setField(service, "negativeLookupEnabled", true);
+        service.init();
+
+        assertFalse(service.isKnownAbsent("missing"));
+        assertTrue(service.markAbsent("missing"));
+        assertTrue(service.isKnownAbsent("missing"));
+        assertFalse(service.get("missing").isPresent());
+
+        // A write replaces the tombstone
+        service.put("missing", "value1");
+        assertFalse(service.isKnownAbsent("missing"));
+        assertEquals(Optional.of("value1"), service.get("missing"));
+    }
+
+    @Test
+    void testMarkAbsentAfterConcurrentPut() {
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 5);
+        ReflectionTestUtils.setField(service, "negativeLookupEnabled", true);
+        service.init();
+
+        // A put that wrote its value and cleared tombstones just before markAbsent inserted one
+        Cache<String, String> cache = (Cache<String, String>) ReflectionTestUtils.getField(service, "cache");
+        cache.put("key1", "value1");
+        assertTrue(service.markAbsent("key1"));
+
+        assertFalse(service.isKnownAbsent("key1"), "A tombstone must not outlive a concurrent write");
+        assertEquals(Optional.of("value1"), service.get("key1"));
+    }
+
+    @Test
+    void testMayBlockLookupsAtQuota() {
+        Cache<String, String> cache = (Cache<String, String>) ReflectionTestUtils.getField(cacheService, "cache");
+        assertFalse(cacheService.mayBlockLookups(CacheService.DEFAULT_NAMESPACE));
+        for (int i = 0; cacheService.getSize() < cache.getMaxEntries(); i++) {
+            cacheService.put("key" + i, "value" + i);
+        }
+        assertTrue(cacheService.mayBlockLookups(CacheService.DEFAULT_NAMESPACE), "Inserts at the quota scan for a victim");
+        assertThrows(NamespaceNotFoundException.class, () -> cacheService.mayBlockLookups("missing"));
+    }
+
+    @Test
+    void testPartitionedDefaultNamespace() {
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 1000);
+        ReflectionTestUtils.setField(service, "cachePartitions", 4);
+        service.init();
+
+        for (int i = 0; i < 100; i++) {
+            service.put("key" + i, "value" + i);
+        }
+        assertEquals(100, service.getSize());
+        assertEquals(Optional.of("value42"), service.get("key42"));
+        assertEquals(5, service.incrementBy("counter", 5));
+        assertEquals(11, service.removeByPrefix("key1"));
+    }
+
+    @Test
+    void testShardAffinity() {
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 1000);
+        ReflectionTestUtils.setField(service, "cachePartitions", 4);
+        ReflectionTestUtils.setField(service, "shardAffinity", true);
+        service.init();
+
+        Set<String> writers = ConcurrentHashMap.newKeySet();
+        PartitionedCache<String, String> cache = (PartitionedCache<String, String>) ReflectionTestUtils.getField(service, "cache");
+        cache.setCacheListener(new CacheListener<>() {
+            @Override
+            public void onPut(String key, String oldValue, String newValue) {
+                writers.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public void onRemove(String key, String value) {
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            service.put("key" + i, "value" + i);
+        }
+        assertEquals(Optional.of("value42"), service.get("key42"));
+        assertEquals(5, service.incrementBy("counter", 5));
+        assertThrows(CacheException.class, () -> service.incrementBy("key42", 1));
+        assertTrue(writers.stream().allMatch(name -> name.startsWith("cache-shard-")), writers.toString());
+        cache.setMaxEntries(1);
+        assertFalse(service.mayBlockLookups(CacheService.DEFAULT_NAMESPACE), "Lookups wait on the shard workers");
+
+        service.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> service.get("key42"));
+    }
+
+    @Test
+    void testAntiEntropyPull() {
+        CacheService replica = newSyncedService();
+        CacheService primary = newSyncedService();
+        for (int i = 0; i < 200; i++) {
+            primary.put("key" + i, "value" + i);
+            replica.put("key" + i, "value" + i);
+        }
+        // Writes the replica missed while partitioned
+        primary.put("key3", "updated");
+        primary.remove("key4");
+        replica.put("orphan", "value");
+
+        SyncReport report = replica.pullFrom(new SyncPeer<String, String>() {
+            @Override
+            public long[] nodeHashes(int leafCount, int[] nodes) {
+                return primary.syncDigests(leafCount, nodes);
+            }
+
+            @Override
+            public ScanResult<String, String> entries(int[] buckets, int cursor, int batchSize) {
+                return primary.syncEntries(buckets, cursor, batchSize);
+            }
+        });
+
+        assertEquals(3, report.getEntriesUpdated());
+        assertEquals(Optional.of("updated"), replica.get("key3"));
+        assertFalse(replica.get("key4").isPresent());
+        assertFalse(replica.get("orphan").isPresent());
+        assertEquals(primary.getSize(), replica.getSize());
+    }
+
+    @Test
+    void testAntiEntropyPullAbortsOnLeafCountMismatch() {
+        CacheService replica = newSyncedService();
+        CacheService primary = new CacheService();
+        ReflectionTestUtils.setField(primary, "cacheCapacity", 1000);
+        ReflectionTestUtils.setField(primary, "antiEntropyEnabled", true);
+        ReflectionTestUtils.setField(primary, "merkleLeaves", 2048);
+        primary.init();
+        for (int i = 0; i < 200; i++) {
+            primary.put("key" + i, "value" + i);
+            replica.put("key" + i, "value" + i);
+        }
+        primary.put("key3", "updated");
+
+        assertThrows(LeafCountMismatchException.class, () -> replica.pullFrom(new SyncPeer<String, String>() {
+            @Override
+            public long[] nodeHashes(int leafCount, int[] nodes) {
+                return primary.syncDigests(leafCount, nodes);
+            }
+
+            @Override
+            public ScanResult<String, String> entries(int[] buckets, int cursor, int batchSize) {
+                return primary.syncEntries(buckets, cursor, batchSize);
+            }
+        }));
+        assertEquals(200, replica.getSize());
+        assertEquals(Optional.of("value3"), replica.get("key3"));
+    }
+
+    @Test
+    void testSyncPeerAllowList() {
+        CacheProperties properties = new CacheProperties();
+        properties.getAntiEntropy().getPeers().add("http://cache-2:8080/");
+        ReflectionTestUtils.setField(cacheService, "cacheProperties", properties);
+        assertTrue(cacheService.isSyncPeer("http://cache-2:8080"));
+        assertFalse(cacheService.isSyncPeer("http://cache-3:8080"));
+    }
+
+    @Test
+    void testAntiEntropyDisabled() {
+        assertFalse(cacheService.isAntiEntropyEnabled());
+        assertThrows(CacheException.class, () -> cacheService.syncDigests(1024, new int[]{1}));
+    }
+
+    private static CacheService newSyncedService() {
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "cacheCapacity", 1000);
+        ReflectionTestUtils.setField(service, "antiEntropyEnabled", true);
+        service.init();
+        return service;
+    }
+}
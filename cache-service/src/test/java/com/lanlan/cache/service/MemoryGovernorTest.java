@@ -0,0 +1,117 @@
+package com.lanlan.cache.service;
+
+import com.lanlan.cache.core.CuckooHashCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryGovernorTest {
+
+    private Map<String, CuckooHashCache<String, String>> caches;
+    private Map<String, Integer> quotas;
+
+    @BeforeEach
+    void setUp() {
+        caches = new HashMap<>();
+        quotas = new HashMap<>();
+        caches.put("busy", new CuckooHashCache<>(1000));
+        caches.put("quiet", new CuckooHashCache<>(100));
+        quotas.put("busy", 200);
+        quotas.put("quiet", 200);
+    }
+
+    @Test
+    void testQuotasWithinBudget() {
+        new MemoryGovernor(1000).rebalance(caches, quotas);
+        assertEquals(200, caches.get("busy").getMaxEntries());
+        assertEquals(200, caches.get("quiet").getMaxEntries());
+    }
+
+    @Test
+    void testUnlimitedBudget() {
+        new MemoryGovernor(0).rebalance(caches, quotas);
+        assertEquals(200, caches.get("busy").getMaxEntries());
+    }
+
+    @Test
+    void testSpareShareIsLentUnderPressure() {
+        for (int i = 0; i < 150; i++) {
+            caches.get("busy").put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            caches.get("quiet").put("key" + i, "value" + i);
+        }
+
+        new MemoryGovernor(200).rebalance(caches, quotas);
+
+        // Each share is 100; quiet keeps 10 used + 50 headroom and lends the other 40
+        assertEquals(60, caches.get("quiet").getMaxEntries());
+        assertEquals(140, caches.get("busy").getMaxEntries());
+        assertTrue(caches.get("busy").getMaxEntries() + caches.get("quiet").getMaxEntries() <= 200,
+                "Allotments should stay within the global budget");
+    }
+
+    @Test
+    void testQuietNamespaceReclaimsLentEntries() {
+        for (int i = 0; i < 150; i++) {
+            caches.get("busy").put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            caches.get("quiet").put("key" + i, "value" + i);
+        }
+        MemoryGovernor governor = new MemoryGovernor(200);
+        governor.rebalance(caches, quotas);
+
+        // busy is above its share, so it has nothing to reclaim
+        governor.reclaim("busy", caches);
+        assertEquals(140, caches.get("busy").getMaxEntries());
+
+        // quiet ramps up to its allotment of 60 before the next rebalance
+        for (int i = 10; i < 60; i++) {
+            caches.get("quiet").put("key" + i, "value" + i);
+        }
+        governor.reclaim("quiet", caches);
+        assertEquals(100, caches.get("quiet").getMaxEntries());
+        assertEquals(100, caches.get("busy").getMaxEntries());
+
+        for (int i = 60; i < 100; i++) {
+            governor.reclaim("quiet", caches);
+            caches.get("quiet").put("key" + i, "value" + i);
+        }
+        assertEquals(100, caches.get("quiet").getSize());
+        assertEquals(0, caches.get("quiet").getEvictionCount(), "A namespace below its share must not self-evict");
+    }
+
+    @Test
+    void testReclaimWithinBudgetIsNoOp() {
+        MemoryGovernor governor = new MemoryGovernor(1000);
+        governor.rebalance(caches, quotas);
+        governor.reclaim("quiet", caches);
+        assertEquals(200, caches.get("quiet").getMaxEntries());
+        assertEquals(200, caches.get("busy").getMaxEntries());
+    }
+
+    @Test
+    void testTinyQuotaNextToLargeOne() {
+        caches.put("big", new CuckooHashCache<>(1000));
+        caches.put("small", new CuckooHashCache<>(100));
+        quotas.clear();
+        quotas.put("big", 2000);
+        quotas.put("small", 10);
+        caches.keySet().retainAll(quotas.keySet());
+
+        // small's proportional share rounds to 0; it must still get an entry and not break lending
+        new MemoryGovernor(100).rebalance(caches, quotas);
+        assertEquals(1, caches.get("small").getMaxEntries());
+        assertEquals(49, caches.get("big").getMaxEntries());
+
+        // Once full, small borrows big's spare share up to its own quota
+        caches.get("small").put("key", "value");
+        new MemoryGovernor(100).rebalance(caches, quotas);
+        assertEquals(10, caches.get("small").getMaxEntries());
+    }
+}
@@ -0,0 +1,31 @@
+package com.lanlan.cache.simulator;
+
+import com.lanlan.cache.config.CacheConfig;
+import com.lanlan.cache.core.CuckooHashCache;
+
+/**
+ * Replays against the production {@link CuckooHashCache}.
+ */
+public class CuckooSimulatedCache implements SimulatedCache {
+
+    private final CuckooHashCache<Integer, Integer> cache;
+
+    public CuckooSimulatedCache(CacheConfig config) {
+        this.cache = new CuckooHashCache<>(config);
+    }
+
+    @Override
+    public boolean get(int keyHash) {
+        return cache.get(keyHash).isPresent();
+    }
+
+    @Override
+    public void put(int keyHash, int valueSize) {
+        cache.put(keyHash, valueSize);
+    }
+
+    @Override
+    public void remove(int keyHash) {
+        cache.remove(keyHash);
+    }
+}
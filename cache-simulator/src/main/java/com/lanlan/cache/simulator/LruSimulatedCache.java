@@ -0,0 +1,36 @@
+package com.lanlan.cache.simulator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exact LRU baseline, to show how far the cuckoo tables are from an ideal LRU of the same size.
+ */
+public class LruSimulatedCache implements SimulatedCache {
+
+    private final Map<Integer, Integer> entries;
+
+    public LruSimulatedCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public boolean get(int keyHash) {
+        return entries.get(keyHash) != null;
+    }
+
+    @Override
+    public void put(int keyHash, int valueSize) {
+        entries.put(keyHash, valueSize);
+    }
+
+    @Override
+    public void remove(int keyHash) {
+        entries.remove(keyHash);
+    }
+}
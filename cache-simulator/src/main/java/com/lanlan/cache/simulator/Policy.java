@@ -0,0 +1,57 @@
+package com.lanlan.cache.simulator;
+
+import com.lanlan.cache.config.CacheConfig;
+import com.lanlan.cache.core.EvictionPolicy;
+
+/**
+ * Cache policies a trace can be replayed against.
+ */
+public enum Policy {
+    // CuckooHashCache as deployed
+    CUCKOO_LRU {
+        @Override
+        public SimulatedCache create(int maxEntries) {
+            return new CuckooSimulatedCache(cuckooConfig(maxEntries, EvictionPolicy.LRU));
+        }
+    },
+    CUCKOO_RANDOM {
+        @Override
+        public SimulatedCache create(int maxEntries) {
+            return new CuckooSimulatedCache(cuckooConfig(maxEntries, EvictionPolicy.RANDOM));
+        }
+    },
+    // Ideal LRU with no hash-slot constraints
+    EXACT_LRU {
+        @Override
+        public SimulatedCache create(int maxEntries) {
+            return new LruSimulatedCache(maxEntries);
+        }
+    };
+
+    // Fixed seed for CUCKOO_RANDOM, so that replaying a trace always gives the same result
+    static final long RANDOM_SEED = 42;
+
+    /**
+     * Creates an empty cache holding at most maxEntries entries.
+     */
+    public abstract SimulatedCache create(int maxEntries);
+
+    /**
+     * Returns the cache.capacity of a production node that holds the given number of entries.
+     * Production leaves max-entries at 0, so a node holds 2 * capacity entries across both tables.
+     */
+    public static int capacityFor(int entries) {
+        return (entries + 1) / 2;
+    }
+
+    /**
+     * Configures the cache the way cache-service does: capacity is half the entries and
+     * no explicit quota is set, so the quota is the full 2 * capacity slots.
+     */
+    private static CacheConfig cuckooConfig(int entries, EvictionPolicy evictionPolicy) {
+        CacheConfig config = new CacheConfig(capacityFor(entries), 0);
+        config.setEvictionPolicy(evictionPolicy);
+        config.setRandomSeed(RANDOM_SEED);
+        return config;
+    }
+}
@@ -0,0 +1,19 @@
+package com.lanlan.cache.simulator;
+
+/**
+ * A cache model that a trace is replayed against. Keys are trace key hashes
+ * and values are value sizes, so only hit and miss behaviour is simulated.
+ */
+public interface SimulatedCache {
+
+    /**
+     * Looks up a key.
+     *
+     * @return true on a hit
+     */
+    boolean get(int keyHash);
+
+    void put(int keyHash, int valueSize);
+
+    void remove(int keyHash);
+}
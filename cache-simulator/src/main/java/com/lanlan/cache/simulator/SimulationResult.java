@@ -0,0 +1,48 @@
+package com.lanlan.cache.simulator;
+
+/**
+ * Hit and miss counts of one replay.
+ */
+public class SimulationResult {
+
+    private final Policy policy;
+
+    private final int maxEntries;
+
+    private final long hits;
+
+    private final long misses;
+
+    public SimulationResult(Policy policy, int maxEntries, long hits, long misses) {
+        this.policy = policy;
+        this.maxEntries = maxEntries;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public double getMissRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) misses / lookups;
+    }
+}
@@ -0,0 +1,171 @@
+package com.lanlan.cache.simulator;
+
+import com.lanlan.cache.trace.TraceReader;
+import com.lanlan.cache.trace.TraceRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Replays a workload trace recorded by cache-service against several cache
+ * policies and sizes in parallel, and prints the resulting hit and miss ratio curves.
+ *
+ * <p>Usage, after {@code mvn package}:
+ * {@code java -jar cache-simulator/target/cache-simulator-1.0-SNAPSHOT.jar <trace-file> [entries,entries,...]}
+ */
+public class TraceSimulator {
+
+    private static final List<Integer> DEFAULT_SIZES = Arrays.asList(1000, 2000, 5000, 10000, 20000);
+
+    private final List<TraceRecord> trace;
+
+    public TraceSimulator(List<TraceRecord> trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Reads a whole trace file into memory so that every replay sees the same records.
+     */
+    public static List<TraceRecord> load(Path path) throws IOException {
+        List<TraceRecord> records = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(path); TraceReader reader = new TraceReader(in)) {
+            TraceRecord record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Replays the trace against one policy and size. Only GETs count towards the ratios;
+     * the trace already contains the PUTs that callers issued after a miss.
+     */
+    public SimulationResult replay(Policy policy, int maxEntries) {
+        SimulatedCache cache = policy.create(maxEntries);
+        long hits = 0;
+        long misses = 0;
+        for (TraceRecord record : trace) {
+            switch (record.getOp()) {
+                case GET:
+                    if (cache.get(record.getKeyHash())) {
+                        hits++;
+                    } else {
+                        misses++;
+                    }
+                    break;
+                case PUT:
+                    cache.put(record.getKeyHash(), record.getValueSize());
+                    break;
+                case REMOVE:
+                    cache.remove(record.getKeyHash());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown op " + record.getOp());
+            }
+        }
+        return new SimulationResult(policy, maxEntries, hits, misses);
+    }
+
+    /**
+     * Replays every combination of policy and size on the given pool.
+     *
+     * @return one result per combination, ordered by policy and then size
+     */
+    public List<SimulationResult> run(List<Policy> policies, List<Integer> sizes, ForkJoinPool pool) {
+        List<Configuration> configurations = new ArrayList<>();
+        for (Policy policy : policies) {
+            for (int size : sizes) {
+                configurations.add(new Configuration(policy, size));
+            }
+        }
+        return pool.invoke(new ReplayTask(configurations));
+    }
+
+    private static class Configuration {
+        final Policy policy;
+        final int maxEntries;
+
+        Configuration(Policy policy, int maxEntries) {
+            this.policy = policy;
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    /**
+     * Splits the configurations in halves until a single replay is left.
+     */
+    private class ReplayTask extends RecursiveTask<List<SimulationResult>> {
+
+        private final List<Configuration> configurations;
+
+        ReplayTask(List<Configuration> configurations) {
+            this.configurations = configurations;
+        }
+
+        @Override
+        protected List<SimulationResult> compute() {
+            if (configurations.isEmpty()) {
+                return new ArrayList<>();
+            }
+            if (configurations.size() == 1) {
+                Configuration configuration = configurations.get(0);
+                List<SimulationResult> results = new ArrayList<>();
+                results.add(replay(configuration.policy, configuration.maxEntries));
+                return results;
+            }
+            int middle = configurations.size() / 2;
+            ReplayTask left = new ReplayTask(configurations.subList(0, middle));
+            ReplayTask right = new ReplayTask(configurations.subList(middle, configurations.size()));
+            left.fork();
+            List<SimulationResult> results = new ArrayList<>(right.compute());
+            results.addAll(0, left.join());
+            return results;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceSimulator <trace-file> [entries,entries,...]");
+            System.exit(1);
+        }
+        List<Integer> sizes = DEFAULT_SIZES;
+        if (args.length > 1) {
+            try {
+                sizes = Arrays.stream(args[1].split(",")).map(String::trim).filter(size -> !size.isEmpty())
+                        .map(Integer::valueOf).collect(Collectors.toList());
+            } catch (NumberFormatException e) {
+                sizes = Collections.emptyList();
+            }
+            if (sizes.isEmpty() || sizes.stream().anyMatch(size -> size < 1)) {
+                System.err.println("Sizes must be a comma-separated list of positive entry counts: " + args[1]);
+                System.exit(1);
+            }
+        }
+
+        List<TraceRecord> trace = load(Paths.get(args[0]));
+        System.out.printf("Replaying %d operations%n", trace.size());
+
+        List<SimulationResult> results = new TraceSimulator(trace)
+                .run(Arrays.asList(Policy.values()), sizes, ForkJoinPool.commonPool());
+
+        // cache.capacity is the setting that gives a node that many entries
+        System.out.printf("%-14s %10s %14s %12s %12s %10s %10s%n",
+                "policy", "entries", "cache.capacity", "hits", "misses", "hit ratio", "miss ratio");
+        for (SimulationResult result : results) {
+            System.out.printf("%-14s %10d %14d %12d %12d %10.4f %10.4f%n",
+                    result.getPolicy(), result.getMaxEntries(), Policy.capacityFor(result.getMaxEntries()),
+                    result.getHits(), result.getMisses(), result.getHitRatio(), result.getMissRatio());
+        }
+    }
+}
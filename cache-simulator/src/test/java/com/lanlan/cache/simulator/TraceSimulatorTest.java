@@ -0,0 +1,92 @@
+package com.lanlan.cache.simulator;
+
+import com.lanlan.cache.trace.TraceOp;
+import com.lanlan.cache.trace.TraceRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceSimulatorTest {
+
+    private TraceSimulator simulator;
+
+    @BeforeEach
+    void setUp() {
+        // Cache-aside workload over 100 keys: GET, and PUT after a miss
+        List<TraceRecord> trace = new ArrayList<>();
+        long timestamp = 0;
+        for (int round = 0; round < 20; round++) {
+            for (int key = 0; key < 100; key++) {
+                trace.add(new TraceRecord(timestamp++, TraceOp.GET, key, 0));
+                trace.add(new TraceRecord(timestamp++, TraceOp.PUT, key, 10));
+            }
+        }
+        simulator = new TraceSimulator(trace);
+    }
+
+    @Test
+    void testWorkingSetFits() {
+        SimulationResult result = simulator.replay(Policy.EXACT_LRU, 200);
+        assertEquals(100, result.getMisses(), "Only the first round should miss");
+        assertEquals(1900, result.getHits());
+        assertEquals(0.95, result.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    void testWorkingSetTooLarge() {
+        // A cyclic scan larger than an LRU cache never hits
+        SimulationResult result = simulator.replay(Policy.EXACT_LRU, 50);
+        assertEquals(0, result.getHits());
+        assertEquals(1.0, result.getMissRatio(), 1e-9);
+    }
+
+    @Test
+    void testCuckooReplay() {
+        SimulationResult result = simulator.replay(Policy.CUCKOO_LRU, 200);
+        assertTrue(result.getHitRatio() > 0.9, "The working set should fit in the cuckoo tables");
+    }
+
+    @Test
+    void testCuckooSizedLikeProduction() {
+        // A node configured with cache.capacity = 50 holds up to 100 entries
+        assertEquals(50, Policy.capacityFor(100));
+        SimulationResult result = simulator.replay(Policy.CUCKOO_LRU, 100);
+        assertTrue(result.getHitRatio() > 0.5, "Most of the 100-key working set should fit in 100 entries");
+    }
+
+    @Test
+    void testRandomEvictionIsRepeatable() {
+        // 60 entries for a 100-key working set, so RANDOM has to pick victims
+        SimulationResult first = simulator.replay(Policy.CUCKOO_RANDOM, 60);
+        SimulationResult second = simulator.replay(Policy.CUCKOO_RANDOM, 60);
+        assertTrue(first.getHits() > 0);
+        assertEquals(first.getHits(), second.getHits());
+        assertEquals(first.getMisses(), second.getMisses());
+    }
+
+    @Test
+    void testParallelRun() {
+        List<SimulationResult> results = simulator.run(Arrays.asList(Policy.values()),
+                Arrays.asList(50, 200), new ForkJoinPool(2));
+
+        assertEquals(Policy.values().length * 2, results.size());
+        assertEquals(Policy.CUCKOO_LRU, results.get(0).getPolicy());
+        assertEquals(50, results.get(0).getMaxEntries());
+        assertEquals(200, results.get(1).getMaxEntries());
+        for (SimulationResult result : results) {
+            assertEquals(2000, result.getHits() + result.getMisses());
+        }
+    }
+
+    @Test
+    void testEmptyRun() {
+        assertTrue(simulator.run(Arrays.asList(Policy.values()), new ArrayList<>(), new ForkJoinPool(2)).isEmpty());
+        assertTrue(simulator.run(new ArrayList<>(), Arrays.asList(50, 200), new ForkJoinPool(2)).isEmpty());
+    }
+}